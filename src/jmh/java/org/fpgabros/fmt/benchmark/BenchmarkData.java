@@ -0,0 +1,122 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+
+/**
+ * Generators for synthetic benchmark files. Output is deterministic for the
+ * same arguments, so runs are comparable.
+ */
+public final class BenchmarkData {
+
+    // rows per record in multipart files
+    public static final int RECORD_ROWS = 50;
+
+    private BenchmarkData() {
+    }
+
+    /**
+     * Writes a delimited text file.
+     *
+     * @param multipart      whether records are separated by blank lines
+     * @param commentPercent share of lines that are comments, 0 to 100
+     * @return the number of data rows written
+     */
+    public static int text(Path file, Shape shape, int rowScale, boolean multipart, int commentPercent)
+            throws IOException {
+        final int rows = shape.rows() / rowScale;
+        int written = 0;
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (int r = 0; r < rows; r++) {
+                if (multipart && r > 0 && r % RECORD_ROWS == 0) {
+                    writer.newLine();
+                }
+                if (isComment(r, commentPercent)) {
+                    writer.write("; comment line " + r + " with some free text");
+                } else {
+                    for (int c = 0; c < shape.columns(); c++) {
+                        if (c > 0) {
+                            writer.write(',');
+                        }
+                        writer.write(cell(r, c));
+                    }
+                    written++;
+                }
+                writer.newLine();
+            }
+        }
+        return written;
+    }
+
+    /**
+     * Writes a workbook with the rows spread over the given number of sheets.
+     * Records are separated by blank rows.
+     *
+     * @return the number of data rows written
+     */
+    public static int workbook(Path file, Shape shape, int rowScale, int sheets) throws IOException {
+        final int rows = shape.rows() / rowScale / sheets;
+        try (SXSSFWorkbook workbook = new SXSSFWorkbook(1000)) {
+            for (int s = 0; s < sheets; s++) {
+                final Sheet sheet = workbook.createSheet("sheet" + s);
+                int rowNum = 0;
+                for (int r = 0; r < rows; r++) {
+                    if (r > 0 && r % RECORD_ROWS == 0) {
+                        rowNum++;
+                    }
+                    final Row row = sheet.createRow(rowNum++);
+                    for (int c = 0; c < shape.columns(); c++) {
+                        // mix of numeric and string cells
+                        if (c % 2 == 0) {
+                            row.createCell(c).setCellValue(r * 31 + c);
+                        } else {
+                            row.createCell(c).setCellValue(cell(r, c));
+                        }
+                    }
+                }
+            }
+            try (OutputStream out = Files.newOutputStream(file)) {
+                workbook.write(out);
+            }
+            workbook.dispose();
+        }
+        return rows * sheets;
+    }
+
+    private static boolean isComment(int row, int commentPercent) {
+        return commentPercent > 0 && Math.floorMod(row * 37, 100) < commentPercent;
+    }
+
+    private static String cell(int row, int column) {
+        return switch (column % 4) {
+            case 0 -> Integer.toString(row * 31 + column);
+            case 1 -> "name" + (row % 997);
+            case 2 -> Double.toString(row / 7.0);
+            default -> "";
+        };
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.benchmark;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.spec.TextSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link Element#dump(int)} of a parsed tree.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class DumpBenchmark {
+
+    @Param({ "WIDE", "TALL" })
+    public Shape shape;
+
+    private Element element;
+    private int rows;
+
+    @Setup
+    public void setup() throws IOException {
+        final Path file = Files.createTempFile("fmt-bench", ".csv");
+        try {
+            // a smaller tree, the dump of a full file runs to hundreds of megabytes
+            rows = BenchmarkData.text(file, shape, 10, true, 0);
+            element = new TextSpec(StandardCharsets.UTF_8, ",", ";", true).read(file.toFile());
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+
+    @Benchmark
+    public String dump(Throughput throughput) {
+        final String dump = element.dump(2);
+        throughput.add(rows, dump.length());
+        return dump;
+    }
+
+}
@@ -0,0 +1,90 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.spec.ElementBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Tree building alone: the listener callbacks a parse issues, including the
+ * fold on every record close, without any input to read.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+public class ElementBuilderBenchmark {
+
+    @Param({ "WIDE", "TALL" })
+    public Shape shape;
+
+    @Param({ "true", "false" })
+    public boolean multipart;
+
+    private String[] values;
+
+    @Setup
+    public void setup() {
+        values = new String[shape.columns()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = "value" + i;
+        }
+    }
+
+    @Benchmark
+    public Element build(Throughput throughput) throws ParseException {
+        final ElementBuilder builder = new ElementBuilder();
+        builder.openFile("bench");
+        builder.openRecord(null);
+        for (int r = 0; r < shape.rows(); r++) {
+            if (multipart && r % BenchmarkData.RECORD_ROWS == 0) {
+                if (r > 0) {
+                    builder.closeRecord();
+                }
+                builder.openRecord(null);
+            }
+            builder.openRow(null);
+            for (int c = 0; c < values.length; c++) {
+                builder.receive(c, values[c]);
+            }
+            builder.closeRow();
+        }
+        if (multipart) {
+            builder.closeRecord();
+        }
+        builder.closeRecord();
+        final Element element = builder.closeFile();
+        throughput.add(shape.rows(), 0);
+        return element;
+    }
+
+}
@@ -0,0 +1,44 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.benchmark;
+
+/**
+ * Proportions of the generated benchmark data.
+ */
+public enum Shape {
+
+    // few long rows
+    WIDE(2_000, 200),
+    // many short rows
+    TALL(100_000, 8);
+
+    private final int rows;
+    private final int columns;
+
+    Shape(int rows, int columns) {
+        this.rows = rows;
+        this.columns = columns;
+    }
+
+    public int rows() {
+        return rows;
+    }
+
+    public int columns() {
+        return columns;
+    }
+
+}
@@ -0,0 +1,85 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.spec.XLSXSpec;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * {@link XLSXSpec#read(File)} over generated workbooks.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class XLSXSpecBenchmark {
+
+    @Param({ "WIDE", "TALL" })
+    public Shape shape;
+
+    @Param({ "1", "4" })
+    public int sheets;
+
+    @Param({ "false", "true" })
+    public boolean streaming;
+
+    private Path file;
+    private int rows;
+    private long bytes;
+    private XLSXSpec spec;
+
+    @Setup
+    public void setup() throws IOException {
+        file = Files.createTempFile("fmt-bench", ".xlsx");
+        // workbooks are far slower to read than text, keep them smaller
+        rows = BenchmarkData.workbook(file, shape, 10, sheets);
+        bytes = Files.size(file);
+        spec = new XLSXSpec(";", streaming);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public Element read(Throughput throughput) throws IOException {
+        final Element element = spec.read(file.toFile());
+        throughput.add(rows, bytes);
+        return element;
+    }
+
+}
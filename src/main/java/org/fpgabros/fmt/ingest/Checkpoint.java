@@ -0,0 +1,91 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.ingest;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Append only record of the files ingested so far. A file is identified by
+ * its absolute path, size and modification time, so a file that changes is
+ * ingested again. A line cut short by a crash never matches a file, which is
+ * then simply ingested again.
+ */
+final class Checkpoint implements Closeable {
+
+    private final Set<String> done = new HashSet<>();
+    private final BufferedWriter writer;
+
+    Checkpoint(Path file) throws IOException {
+        if (Files.exists(file)) {
+            done.addAll(Files.readAllLines(file, StandardCharsets.UTF_8));
+        }
+        final boolean partial = endsPartial(file);
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        if (partial) {
+            // keep the next entry off the line a crash left behind
+            writer.newLine();
+        }
+    }
+
+    synchronized boolean isDone(Path file, BasicFileAttributes attributes) {
+        return done.contains(key(file, attributes));
+    }
+
+    /**
+     * Records a file as ingested, flushing the entry before returning.
+     */
+    synchronized void markDone(Path file, BasicFileAttributes attributes) throws IOException {
+        final String key = key(file, attributes);
+        writer.write(key);
+        writer.newLine();
+        writer.flush();
+        done.add(key);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+
+    private static String key(Path file, BasicFileAttributes attributes) {
+        return attributes.size() + "\t" + attributes.lastModifiedTime().toMillis() + "\t"
+                + file.toAbsolutePath().normalize();
+    }
+
+    private static boolean endsPartial(Path file) throws IOException {
+        if (!Files.exists(file) || Files.size(file) == 0) {
+            return false;
+        }
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            final ByteBuffer last = ByteBuffer.allocate(1);
+            channel.position(channel.size() - 1).read(last);
+            return last.get(0) != '\n';
+        }
+    }
+
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.ingest;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.spec.InstrumentedSpec;
+import org.fpgabros.fmt.spec.Spec;
+import org.fpgabros.fmt.spec.TextSpec;
+import org.fpgabros.fmt.spec.XLSXSpec;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Ingests every supported file below a directory. Files are parsed on a fixed
+ * pool of workers and handed to the {@link IngestSink} on the calling thread
+ * through a bounded queue, so workers wait once the sink falls behind. Each
+ * file the sink accepts is recorded in the checkpoint, and a later run skips
+ * it unless it has changed. Files that fail to parse are logged and left out
+ * of the checkpoint, so they are retried on the next run.
+ */
+@Slf4j
+public class IngestJob {
+
+    private static final double MB = 1024 * 1024;
+
+    private final IngestProperties properties;
+    private final IngestSink sink;
+    private final Spec textSpec;
+    private final Spec xlsxSpec;
+
+    public IngestJob(IngestProperties properties, IngestSink sink) {
+        this(properties, sink, new InstrumentedSpec(new TextSpec()),
+                new InstrumentedSpec(new XLSXSpec(";", true)));
+    }
+
+    public IngestJob(IngestProperties properties, IngestSink sink, Spec textSpec, Spec xlsxSpec) {
+        this.properties = properties;
+        this.sink = sink;
+        this.textSpec = textSpec;
+        this.xlsxSpec = xlsxSpec;
+    }
+
+    /**
+     * Runs the ingestion to completion.
+     *
+     * @throws IOException when the directory cannot be scanned, the
+     *                     checkpoint cannot be written or the sink fails
+     */
+    public IngestSummary run() throws IOException, InterruptedException {
+        final Path directory = properties.getDirectory();
+        if (directory == null || !Files.isDirectory(directory)) {
+            throw new IOException("Not a directory to ingest: " + directory);
+        }
+        try (Checkpoint checkpoint = new Checkpoint(properties.getCheckpoint())) {
+            final List<Pending> pending = new ArrayList<>();
+            final int found = scan(directory, checkpoint, pending);
+            final Progress progress = new Progress(pending);
+            log.info("Ingesting {} files from {}, {} already done", pending.size(), directory,
+                    found - pending.size());
+
+            final int workerCount = Math.max(1, Math.min(properties.getWorkers(), pending.size()));
+            final BlockingQueue<Parsed> parsed = new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity()));
+            final Queue<Pending> work = new ConcurrentLinkedQueue<>(pending);
+            final ExecutorService workers = Executors.newFixedThreadPool(workerCount,
+                    Thread.ofPlatform().name("fmt-ingest-", 0).factory());
+            final ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(
+                    Thread.ofPlatform().name("fmt-ingest-progress").daemon().factory());
+            final long interval = properties.getReportInterval().toMillis();
+            reporter.scheduleAtFixedRate(() -> log.info(progress.describe()), interval, interval,
+                    TimeUnit.MILLISECONDS);
+            try {
+                for (int i = 0; i < workerCount; i++) {
+                    workers.execute(() -> parseAll(work, parsed));
+                }
+                for (int i = 0; i < pending.size(); i++) {
+                    final Parsed next = parsed.take();
+                    if (next.failure() != null) {
+                        log.warn("Failed to ingest {}", next.file().path(), next.failure());
+                        progress.failed.incrementAndGet();
+                        continue;
+                    }
+                    sink.accept(next.file().path(), next.element());
+                    checkpoint.markDone(next.file().path(), next.file().attributes());
+                    progress.ingested.incrementAndGet();
+                    progress.bytes.addAndGet(next.file().attributes().size());
+                }
+            } finally {
+                // releases workers waiting on a sink that failed
+                workers.shutdownNow();
+                reporter.shutdownNow();
+            }
+            log.info(progress.describe());
+            return new IngestSummary(progress.ingested.get(), found - pending.size(), progress.failed.get(),
+                    progress.bytes.get(), progress.elapsed());
+        }
+    }
+
+    /**
+     * @return the spec that reads a file, or null when the file is not
+     *         ingested
+     */
+    protected Spec specFor(Path file) {
+        String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+        if (name.endsWith(".xlsx")) {
+            return xlsxSpec;
+        }
+        if (name.endsWith(".gz")) {
+            name = name.substring(0, name.length() - 3);
+        }
+        return name.endsWith(".csv") || name.endsWith(".txt") ? textSpec : null;
+    }
+
+    private int scan(Path directory, Checkpoint checkpoint, List<Pending> pending) throws IOException {
+        final List<Path> files;
+        try (Stream<Path> walk = Files.walk(directory)) {
+            files = walk.filter(Files::isRegularFile).filter(p -> specFor(p) != null).sorted().toList();
+        }
+        for (Path file : files) {
+            final BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+            if (!checkpoint.isDone(file, attributes)) {
+                pending.add(new Pending(file, attributes, specFor(file)));
+            }
+        }
+        return files.size();
+    }
+
+    private static void parseAll(Queue<Pending> work, BlockingQueue<Parsed> parsed) {
+        Pending file;
+        while ((file = work.poll()) != null) {
+            Parsed result;
+            try {
+                result = new Parsed(file, file.spec().read(file.path().toFile()), null);
+            } catch (Throwable ex) {
+                // every file yields a result, or the sink would wait forever
+                result = new Parsed(file, null, ex);
+            }
+            try {
+                parsed.put(result);
+            } catch (InterruptedException ex) {
+                return;
+            }
+        }
+    }
+
+    private record Pending(Path path, BasicFileAttributes attributes, Spec spec) {
+    }
+
+    private record Parsed(Pending file, Element element, Throwable failure) {
+    }
+
+    private static final class Progress {
+
+        private final int total;
+        private final long totalBytes;
+        private final long start = System.nanoTime();
+        private final AtomicInteger ingested = new AtomicInteger();
+        private final AtomicInteger failed = new AtomicInteger();
+        private final AtomicLong bytes = new AtomicLong();
+
+        Progress(List<Pending> pending) {
+            this.total = pending.size();
+            this.totalBytes = pending.stream().mapToLong(p -> p.attributes().size()).sum();
+        }
+
+        Duration elapsed() {
+            return Duration.ofNanos(System.nanoTime() - start);
+        }
+
+        String describe() {
+            final double seconds = Math.max(elapsed().toNanos() / 1e9, 1e-9);
+            return String.format(Locale.ROOT,
+                    "Ingested %d/%d files (%d failed), %.1f/%.1f MB at %.1f MB/s, %.1f files/s",
+                    ingested.get(), total, failed.get(), bytes.get() / MB, totalBytes / MB,
+                    bytes.get() / MB / seconds, ingested.get() / seconds);
+        }
+
+    }
+
+}
@@ -0,0 +1,59 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.ingest;
+
+import java.nio.file.Path;
+import java.time.Duration;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import lombok.Data;
+
+/**
+ * Settings of a directory ingestion, bound from {@code fmt.ingest.*}.
+ */
+@Data
+@ConfigurationProperties(prefix = "fmt.ingest")
+public class IngestProperties {
+
+    /**
+     * Directory scanned, with its subdirectories, for {@code .xlsx} files and
+     * {@code .csv} and {@code .txt} files, which may be gzip compressed.
+     */
+    private Path directory;
+
+    /**
+     * File recording the files already ingested, so a restarted run skips
+     * them.
+     */
+    private Path checkpoint = Path.of("fmt-ingest.checkpoint");
+
+    /**
+     * Files parsed at once.
+     */
+    private int workers = Runtime.getRuntime().availableProcessors();
+
+    /**
+     * Parsed files held for the sink before the workers wait for it.
+     */
+    private int queueCapacity = 4;
+
+    /**
+     * How often progress is logged.
+     */
+    private Duration reportInterval = Duration.ofSeconds(10);
+
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.ingest;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+/**
+ * Runs an {@link IngestJob} on startup when {@code fmt.ingest.directory} is
+ * set. Files go to the {@link IngestSink} bean, or are only logged when there
+ * is none.
+ */
+@Component
+@ConditionalOnProperty(prefix = "fmt.ingest", name = "directory")
+@EnableConfigurationProperties(IngestProperties.class)
+public class IngestRunner implements CommandLineRunner {
+
+    private final IngestProperties properties;
+    private final ObjectProvider<IngestSink> sink;
+
+    public IngestRunner(IngestProperties properties, ObjectProvider<IngestSink> sink) {
+        this.properties = properties;
+        this.sink = sink;
+    }
+
+    @Override
+    public void run(String... args) throws Exception {
+        new IngestJob(properties, sink.getIfAvailable(IngestSink::logging)).run();
+    }
+
+}
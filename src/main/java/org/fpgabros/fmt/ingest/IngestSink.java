@@ -0,0 +1,41 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.ingest;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Destination of the files an {@link IngestJob} parses. Files are handed over
+ * one at a time from a single thread, in the order they finish parsing. A
+ * file is recorded as ingested once the sink returns; a sink that throws
+ * stops the job.
+ */
+@FunctionalInterface
+public interface IngestSink {
+
+    void accept(Path file, Element element) throws IOException;
+
+    /**
+     * @return a sink that only logs the files it receives
+     */
+    static IngestSink logging() {
+        return LoggingSink.INSTANCE;
+    }
+
+}
@@ -0,0 +1,30 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.ingest;
+
+import java.time.Duration;
+
+/**
+ * Outcome of an {@link IngestJob} run.
+ *
+ * @param ingested files handed to the sink
+ * @param skipped  files already recorded in the checkpoint
+ * @param failed   files that could not be parsed
+ * @param bytes    size of the files ingested
+ * @param elapsed  time the run took after scanning the directory
+ */
+public record IngestSummary(int ingested, int skipped, int failed, long bytes, Duration elapsed) {
+}
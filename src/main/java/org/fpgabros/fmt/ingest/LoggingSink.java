@@ -0,0 +1,34 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.ingest;
+
+import java.nio.file.Path;
+
+import org.fpgabros.fmt.model.Element;
+
+import lombok.extern.slf4j.Slf4j;
+
+@Slf4j
+enum LoggingSink implements IngestSink {
+
+    INSTANCE;
+
+    @Override
+    public void accept(Path file, Element element) {
+        log.info("Ingested {} with {} records", file, element.getChildren().size());
+    }
+
+}
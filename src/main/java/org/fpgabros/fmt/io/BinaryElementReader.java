@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Reads files written by {@link BinaryElementWriter}.
+ */
+public final class BinaryElementReader {
+
+    private BinaryElementReader() {
+    }
+
+    /**
+     * Decodes the whole tree in a file.
+     */
+    public static Element read(Path file) throws IOException {
+        final BinaryFile binary = BinaryFile.map(file);
+        return binary.decode(binary.root());
+    }
+
+    /**
+     * Maps a file and returns a lazy view of its root. The file stays mapped
+     * for as long as any view of it is reachable.
+     */
+    public static MappedElement map(Path file) throws IOException {
+        final BinaryFile binary = BinaryFile.map(file);
+        return new MappedElement(binary, binary.root());
+    }
+
+}
@@ -0,0 +1,411 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.spec.ParseListener;
+
+/**
+ * Writes elements in the binary format read by {@link BinaryElementReader}.
+ * <p>
+ * The writer can be given a complete tree through {@link #write(Element)}, or
+ * be used as the listener of a parse, in which case the tree is written as it
+ * is parsed and never held in memory. Either way a file holds a single tree.
+ * Short strings are written once to a table at the end of the file and
+ * referenced by index, longer ones are written in place.
+ */
+public class BinaryElementWriter implements ElementWriter, ParseListener<Long> {
+
+    // strings up to this length are shared through the table
+    private static final int SHARED_LENGTH = 64;
+    private static final int MAX_SHARED = 1 << 20;
+
+    private final FileChannel channel;
+    // share short strings through the table, off for files read before they are complete
+    private final boolean shareStrings;
+    private final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    // file position of the start of the buffer
+    private long flushed;
+
+    private final Map<String, Integer> stringIndex = new HashMap<>();
+    private final List<String> strings = new ArrayList<>();
+
+    // open branches during a parse, by depth
+    private int depth;
+    private long[] tagPositions = new long[8];
+    private long[] countPositions = new long[8];
+    private int[] counts = new int[8];
+    private String[] values = new String[8];
+
+    private boolean started;
+    private boolean finished;
+
+    public BinaryElementWriter(Path file) throws IOException {
+        this(FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING), true);
+    }
+
+    BinaryElementWriter(FileChannel channel, boolean shareStrings) {
+        this.channel = channel;
+        this.shareStrings = shareStrings;
+    }
+
+    /**
+     * Writes a complete tree as the content of the file.
+     */
+    @Override
+    public void write(Element element) throws IOException {
+        start();
+        writeNode(element);
+        finish();
+    }
+
+    /**
+     * Writes a tree after whatever was written before, for files that hold
+     * nodes read back one at a time rather than a single tree.
+     *
+     * @return the position the node starts at
+     */
+    long append(Element element) throws IOException {
+        if (!started) {
+            start();
+        }
+        final long position = position();
+        writeNode(element);
+        return position;
+    }
+
+    @Override
+    public void openFile(String id) throws ParseException {
+        if (started) {
+            throw new ParseException("Parser has not been reset.");
+        }
+        try {
+            start();
+            openBranch(id);
+        } catch (IOException ex) {
+            throw new ParseException(ex);
+        }
+    }
+
+    @Override
+    public void openRecord(String id) throws ParseException {
+        requireOpen("A file must be opened to start a record.");
+        final int index = counts[depth - 1]++;
+        openChild(id != null ? id : Integer.toString(index));
+    }
+
+    @Override
+    public void openRow(Integer index) throws ParseException {
+        requireOpen("A record must be opened to start a row.");
+        final int idx = counts[depth - 1]++;
+        openChild(Integer.toString(index != null ? index : idx));
+    }
+
+    @Override
+    public void receive(Integer index, String value) throws ParseException {
+        requireOpen("A row must be opened to receive a value.");
+        final int idx = counts[depth - 1]++;
+        try {
+            writeLeaf(Integer.toString(index != null ? index : idx), value);
+        } catch (IOException ex) {
+            throw new ParseException(ex);
+        }
+    }
+
+    @Override
+    public void comment(String value) throws ParseException {
+        requireOpen("A file must be opened to process a comment.");
+        final String existing = values[depth - 1];
+        values[depth - 1] = existing == null ? value : (existing + "\n" + value);
+    }
+
+    @Override
+    public void closeRow() throws ParseException {
+        if (depth < 2) {
+            throw new ParseException("A row cannot be closed. No row is open.");
+        }
+        closeBranch(false);
+    }
+
+    @Override
+    public void closeRecord() throws ParseException {
+        if (depth < 2) {
+            throw new ParseException("A record cannot be closed. No record is open.");
+        }
+        closeBranch(true);
+    }
+
+    /**
+     * @return the size of the file
+     */
+    @Override
+    public Long closeFile() throws ParseException {
+        requireOpen("A file cannot be closed. No file is open.");
+        closeBranch(true);
+        try {
+            return finish();
+        } catch (IOException ex) {
+            throw new ParseException(ex);
+        }
+    }
+
+    @Override
+    public void reset() throws ParseException {
+        depth = 0;
+        started = false;
+        finished = false;
+        buffer.clear();
+        flushed = 0;
+        stringIndex.clear();
+        strings.clear();
+        try {
+            channel.truncate(0);
+            channel.position(0);
+        } catch (IOException ex) {
+            throw new ParseException(ex);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void requireOpen(String message) throws ParseException {
+        if (depth == 0) {
+            throw new ParseException(message);
+        }
+    }
+
+    private void openChild(String id) throws ParseException {
+        try {
+            openBranch(id);
+        } catch (IOException ex) {
+            throw new ParseException(ex);
+        }
+    }
+
+    private void openBranch(String id) throws IOException {
+        if (depth == tagPositions.length) {
+            final int capacity = depth * 2;
+            tagPositions = Arrays.copyOf(tagPositions, capacity);
+            countPositions = Arrays.copyOf(countPositions, capacity);
+            counts = Arrays.copyOf(counts, capacity);
+            values = Arrays.copyOf(values, capacity);
+        }
+        tagPositions[depth] = position();
+        countPositions[depth] = writeBranchHeader(id);
+        counts[depth] = 0;
+        values[depth] = null;
+        depth++;
+    }
+
+    private void closeBranch(boolean fold) throws ParseException {
+        depth--;
+        try {
+            closeBranch(countPositions[depth], counts[depth], values[depth]);
+            if (fold && counts[depth] == 1) {
+                final int tag = tag(tagPositions[depth]);
+                patch(tagPositions[depth], (byte) BinaryFormat.tag(BinaryFormat.FOLDED, BinaryFormat.idKind(tag)));
+            }
+        } catch (IOException ex) {
+            throw new ParseException(ex);
+        }
+        values[depth] = null;
+    }
+
+    private void writeNode(Element element) throws IOException {
+        if (element.getChildren().isEmpty()) {
+            writeLeaf(element.getId(), element.getValue());
+            return;
+        }
+        final long countPosition = writeBranchHeader(element.getId());
+        for (Element child : element.getChildren()) {
+            writeNode(child);
+        }
+        closeBranch(countPosition, element.getChildren().size(), element.getValue());
+    }
+
+    private void writeLeaf(String id, String value) throws IOException {
+        writeId(BinaryFormat.LEAF, id);
+        writeString(value);
+    }
+
+    /**
+     * @return the position of the child count
+     */
+    private long writeBranchHeader(String id) throws IOException {
+        writeId(BinaryFormat.BRANCH, id);
+        ensure(12);
+        final long countPosition = position();
+        buffer.putInt(0);
+        buffer.putLong(0);
+        return countPosition;
+    }
+
+    private void closeBranch(long countPosition, int count, String value) throws IOException {
+        final long length = position() - countPosition - 12;
+        final ByteBuffer header = ByteBuffer.allocate(12);
+        header.putInt(count).putLong(length).flip();
+        patch(countPosition, header);
+        writeString(value);
+    }
+
+    private void writeId(int kind, String id) throws IOException {
+        ensure(6);
+        if (id == null) {
+            buffer.put((byte) BinaryFormat.tag(kind, BinaryFormat.ID_NULL));
+            return;
+        }
+        final int numeric = BinaryFormat.parseId(id);
+        if (numeric >= 0) {
+            buffer.put((byte) BinaryFormat.tag(kind, BinaryFormat.ID_INT));
+            BinaryFormat.putVarint(buffer, numeric);
+        } else {
+            buffer.put((byte) BinaryFormat.tag(kind, BinaryFormat.ID_STRING));
+            writeString(id);
+        }
+    }
+
+    private void writeString(String value) throws IOException {
+        ensure(5);
+        if (value == null) {
+            BinaryFormat.putVarint(buffer, 0);
+            return;
+        }
+        if (shareStrings && value.length() <= SHARED_LENGTH) {
+            Integer index = stringIndex.get(value);
+            if (index == null && strings.size() < MAX_SHARED) {
+                index = strings.size();
+                strings.add(value);
+                stringIndex.put(value, index);
+            }
+            if (index != null) {
+                BinaryFormat.putVarint(buffer, index << 1 | 1);
+                return;
+            }
+        }
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        BinaryFormat.putVarint(buffer, (bytes.length + 1) << 1);
+        writeBytes(bytes);
+    }
+
+    private void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            if (!buffer.hasRemaining()) {
+                flush();
+            }
+            final int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    private void start() throws IOException {
+        if (started) {
+            throw new IllegalStateException("A binary element file holds a single tree.");
+        }
+        started = true;
+        ensure(BinaryFormat.HEADER_SIZE);
+        buffer.putInt(BinaryFormat.MAGIC);
+        buffer.put(BinaryFormat.VERSION);
+    }
+
+    private long finish() throws IOException {
+        if (finished) {
+            throw new IllegalStateException("The binary element file is already complete.");
+        }
+        finished = true;
+        final long tableOffset = position();
+        ensure(5);
+        BinaryFormat.putVarint(buffer, strings.size());
+        for (String s : strings) {
+            final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+            ensure(5);
+            BinaryFormat.putVarint(buffer, bytes.length);
+            writeBytes(bytes);
+        }
+        ensure(BinaryFormat.TRAILER_SIZE);
+        buffer.putLong(tableOffset);
+        buffer.putInt(BinaryFormat.MAGIC);
+        flush();
+        return flushed;
+    }
+
+    long position() {
+        return flushed + buffer.position();
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushed += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private int tag(long position) throws IOException {
+        if (position >= flushed) {
+            return buffer.get((int) (position - flushed));
+        }
+        final ByteBuffer tag = ByteBuffer.allocate(1);
+        channel.read(tag, position);
+        return tag.get(0);
+    }
+
+    private void patch(long position, byte value) throws IOException {
+        patch(position, ByteBuffer.wrap(new byte[] { value }));
+    }
+
+    /**
+     * Overwrites bytes that were already written, which may still be in the
+     * buffer or already be in the file.
+     */
+    private void patch(long position, ByteBuffer bytes) throws IOException {
+        if (position >= flushed) {
+            buffer.put((int) (position - flushed), bytes, bytes.position(), bytes.remaining());
+            return;
+        }
+        if (position + bytes.remaining() > flushed) {
+            flush();
+        }
+        while (bytes.hasRemaining()) {
+            position += channel.write(bytes, position);
+        }
+    }
+
+}
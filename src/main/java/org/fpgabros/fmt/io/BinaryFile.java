@@ -0,0 +1,238 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.fpgabros.fmt.exception.FormatException;
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * A memory mapped binary element file and its string table. Strings in the
+ * table are decoded once, on first use.
+ */
+final class BinaryFile {
+
+    // shared strings for the small int ids that make up most of a tree
+    private static final String[] SMALL_IDS = new String[1024];
+
+    static {
+        for (int i = 0; i < SMALL_IDS.length; i++) {
+            SMALL_IDS[i] = Integer.toString(i);
+        }
+    }
+
+    private final ByteBuffer data;
+    private final int[] stringOffsets;
+    private final String[] strings;
+
+    private BinaryFile(ByteBuffer data, int[] stringOffsets) {
+        this.data = data;
+        this.stringOffsets = stringOffsets;
+        this.strings = new String[stringOffsets.length];
+    }
+
+    static BinaryFile map(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            final long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new FormatException("Binary element files over 2 GB are not supported: " + file);
+            }
+            if (size < BinaryFormat.HEADER_SIZE + BinaryFormat.TRAILER_SIZE) {
+                throw new FormatException("Not a binary element file: " + file);
+            }
+            final ByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            final int end = (int) size - BinaryFormat.TRAILER_SIZE;
+            if (data.getInt(0) != BinaryFormat.MAGIC || data.getInt(end + 8) != BinaryFormat.MAGIC) {
+                throw new FormatException("Not a binary element file: " + file);
+            }
+            if (data.get(4) != BinaryFormat.VERSION) {
+                throw new FormatException("Unsupported binary element version " + data.get(4) + ": " + file);
+            }
+
+            // locate the strings in the table
+            final Cursor cursor = new Cursor((int) data.getLong(end));
+            final int count = cursor.varint(data);
+            final int[] offsets = new int[count];
+            for (int i = 0; i < count; i++) {
+                offsets[i] = cursor.position;
+                final int length = cursor.varint(data);
+                cursor.position += length;
+            }
+            return new BinaryFile(data, offsets);
+        }
+    }
+
+    /**
+     * Wraps nodes written without a string table, such as the nodes of a
+     * spill file.
+     */
+    static BinaryFile of(ByteBuffer data) {
+        return new BinaryFile(data, new int[0]);
+    }
+
+    int root() {
+        return BinaryFormat.HEADER_SIZE;
+    }
+
+    int tag(int position) {
+        return data.get(position);
+    }
+
+    /**
+     * Decodes the subtree at a position.
+     */
+    Element decode(int position) {
+        return decode(new Cursor(position), false);
+    }
+
+    /**
+     * Decodes the subtree at a position into elements that can't be modified.
+     */
+    Element decodeReadOnly(int position) {
+        return decode(new Cursor(position), true);
+    }
+
+    private Element decode(Cursor cursor, boolean readOnly) {
+        final int tag = data.get(cursor.position++);
+        final String id = readId(cursor, tag);
+        final int kind = BinaryFormat.kind(tag);
+        if (kind == BinaryFormat.LEAF) {
+            final String value = readString(cursor);
+            return readOnly ? new ReadOnlyElement(id, value).seal() : new Element(id, value);
+        }
+
+        final int count = data.getInt(cursor.position);
+        cursor.position += 12;
+        final Element element = readOnly ? new ReadOnlyElement(id, null) : new Element(id);
+        for (int i = 0; i < count; i++) {
+            element.getChildren().add(decode(cursor, readOnly));
+        }
+        final String value = readString(cursor);
+        if (kind == BinaryFormat.FOLDED) {
+            // the same as ElementBuilder.fold
+            while (element.getChildren().size() == 1) {
+                final Element child = element.getChildren().get(0);
+                element.setValue(child.getValue());
+                element.setChildren(child.getChildren());
+            }
+        } else {
+            element.setValue(value);
+        }
+        return element instanceof ReadOnlyElement built ? built.seal() : element;
+    }
+
+    /**
+     * Reads the id of a node and moves the cursor past it.
+     */
+    String readId(Cursor cursor, int tag) {
+        return switch (BinaryFormat.idKind(tag)) {
+            case BinaryFormat.ID_INT -> {
+                final int value = cursor.varint(data);
+                yield value < SMALL_IDS.length ? SMALL_IDS[value] : Integer.toString(value);
+            }
+            case BinaryFormat.ID_STRING -> readString(cursor);
+            default -> null;
+        };
+    }
+
+    /**
+     * Reads a string reference and moves the cursor past it.
+     */
+    String readString(Cursor cursor) {
+        final int ref = cursor.varint(data);
+        if (ref == 0) {
+            return null;
+        }
+        if ((ref & 1) == 1) {
+            return string(ref >>> 1);
+        }
+        final int length = (ref >>> 1) - 1;
+        final String s = utf8(cursor.position, length);
+        cursor.position += length;
+        return s;
+    }
+
+    /**
+     * Moves the cursor past a string reference without decoding it.
+     */
+    void skipString(Cursor cursor) {
+        final int ref = cursor.varint(data);
+        if (ref != 0 && (ref & 1) == 0) {
+            cursor.position += (ref >>> 1) - 1;
+        }
+    }
+
+    ByteBuffer getData() {
+        return data;
+    }
+
+    int getInt(int position) {
+        return data.getInt(position);
+    }
+
+    long getLong(int position) {
+        return data.getLong(position);
+    }
+
+    private String string(int index) {
+        String s = strings[index];
+        if (s == null) {
+            final Cursor cursor = new Cursor(stringOffsets[index]);
+            final int length = cursor.varint(data);
+            s = utf8(cursor.position, length);
+            strings[index] = s;
+        }
+        return s;
+    }
+
+    private String utf8(int position, int length) {
+        final byte[] bytes = new byte[length];
+        data.get(position, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Read position within the file.
+     */
+    static final class Cursor {
+
+        int position;
+
+        Cursor(int position) {
+            this.position = position;
+        }
+
+        int varint(ByteBuffer data) {
+            int value = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = data.get(position++);
+                value |= (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return value;
+        }
+
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Layout of the binary element format.
+ *
+ * <pre>
+ * file    = MAGIC VERSION node strings tableOffset:long MAGIC
+ * node    = tag id (leaf: value | branch: count:int length:long children value)
+ * tag     = kind &lt;&lt; 2 | idKind
+ * id      = varint (int ids) | string (other ids) | nothing (null ids)
+ * value   = string
+ * string  = varint: 0 null, odd table index &lt;&lt; 1 | 1, even (utf8 length + 1) &lt;&lt; 1 followed by the bytes
+ * strings = varint count, then varint length and utf8 bytes for each
+ * </pre>
+ *
+ * The length of a branch is the number of bytes of its children, so a subtree
+ * can be skipped without reading it. A folded node is a branch that had a
+ * single child when it was closed. It reads as that child, under the id of the
+ * folded node, the same as records are folded while building a tree.
+ */
+final class BinaryFormat {
+
+    // "OFMT"
+    static final int MAGIC = 0x4F464D54;
+    static final byte VERSION = 1;
+
+    static final int HEADER_SIZE = 5;
+    static final int TRAILER_SIZE = 12;
+
+    static final int ID_NULL = 0;
+    static final int ID_INT = 1;
+    static final int ID_STRING = 2;
+
+    static final int LEAF = 0;
+    static final int BRANCH = 1;
+    static final int FOLDED = 2;
+
+    private BinaryFormat() {
+    }
+
+    static int tag(int kind, int idKind) {
+        return kind << 2 | idKind;
+    }
+
+    static int kind(int tag) {
+        return tag >>> 2;
+    }
+
+    static int idKind(int tag) {
+        return tag & 3;
+    }
+
+    static void putVarint(ByteBuffer buffer, int value) {
+        while ((value & ~0x7F) != 0) {
+            buffer.put((byte) (value & 0x7F | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * @return the id as an int when it is the canonical form of a non negative
+     *         int, otherwise -1
+     */
+    static int parseId(String id) {
+        final int length = id.length();
+        if (length == 0 || length > 10 || (length > 1 && id.charAt(0) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value <= Integer.MAX_VALUE ? (int) value : -1;
+    }
+
+}
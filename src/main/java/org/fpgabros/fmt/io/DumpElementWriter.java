@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Writes the indented format of {@link Element#dump(Appendable, int)}, one
+ * element per line.
+ */
+public class DumpElementWriter extends AppendableElementWriter {
+
+    private final int indent;
+
+    public DumpElementWriter(Appendable out, int indent) {
+        super(out);
+        this.indent = indent;
+    }
+
+    @Override
+    public void write(Element element) throws IOException {
+        element.dump(out, indent);
+    }
+
+}
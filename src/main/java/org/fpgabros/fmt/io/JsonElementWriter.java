@@ -0,0 +1,106 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.util.Stack;
+
+/**
+ * Writes elements as JSON objects of the form
+ * {@code {"id":"0","value":"v","index":[..],"children":[..]}}. A null value,
+ * an empty index and no children are left out.
+ */
+public class JsonElementWriter extends AppendableElementWriter {
+
+    public JsonElementWriter(Appendable out) {
+        super(out);
+    }
+
+    @Override
+    public void write(Element element) throws IOException {
+        // open elements and the next child to write for each
+        final Stack<Element> elements = new Stack<>();
+        final Stack<Integer> next = new Stack<>();
+        open(element);
+        elements.push(element);
+        next.push(0);
+        while (!elements.isEmpty()) {
+            final Element e = elements.peek();
+            final int i = next.pop();
+            if (i == e.getChildren().size()) {
+                elements.pop();
+                out.append(e.getChildren().isEmpty() ? "}" : "]}");
+                continue;
+            }
+            next.push(i + 1);
+            out.append(i == 0 ? ",\"children\":[" : ",");
+            final Element child = e.getChildren().get(i);
+            open(child);
+            elements.push(child);
+            next.push(0);
+        }
+    }
+
+    private void open(Element element) throws IOException {
+        out.append("{\"id\":");
+        string(element.getId());
+        if (element.getValue() != null) {
+            out.append(",\"value\":");
+            string(element.getValue());
+        }
+        if (!element.getIndex().isEmpty()) {
+            out.append(",\"index\":[");
+            for (int i = 0; i < element.getIndex().size(); i++) {
+                if (i > 0) {
+                    out.append(',');
+                }
+                string(element.getIndex().get(i));
+            }
+            out.append(']');
+        }
+    }
+
+    private void string(String s) throws IOException {
+        if (s == null) {
+            out.append("null");
+            return;
+        }
+        out.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            final char c = s.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                case '\b' -> out.append("\\b");
+                case '\f' -> out.append("\\f");
+                default -> {
+                    if (c < 0x20) {
+                        out.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+        out.append('"');
+    }
+
+}
@@ -0,0 +1,172 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.fpgabros.fmt.io.BinaryFile.Cursor;
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Lazy view of an element in a memory mapped binary element file. Nothing is
+ * decoded until asked for, and looking up a child skips over the subtrees of
+ * its siblings without reading them.
+ */
+public final class MappedElement {
+
+    private final BinaryFile file;
+    private final int position;
+    private final String id;
+
+    // the node the view reads, which is further down when folded
+    private final int node;
+    private final int tag;
+    private final int childCount;
+    private final int childrenStart;
+
+    MappedElement(BinaryFile file, int position) {
+        this.file = file;
+        this.position = position;
+
+        final int outerTag = file.tag(position);
+        final Cursor cursor = new Cursor(position + 1);
+        this.id = file.readId(cursor, outerTag);
+
+        // follow single child chains the way they are folded
+        int current = position;
+        int currentTag = outerTag;
+        int children = cursor.position;
+        boolean fold = BinaryFormat.kind(outerTag) == BinaryFormat.FOLDED;
+        while (true) {
+            if (BinaryFormat.kind(currentTag) == BinaryFormat.LEAF) {
+                break;
+            }
+            final int count = file.getInt(children);
+            if (!fold || count != 1) {
+                break;
+            }
+            current = children + 12;
+            currentTag = file.tag(current);
+            children = skipId(current, currentTag);
+        }
+        this.node = current;
+        this.tag = currentTag;
+        this.childrenStart = children + 12;
+        this.childCount = BinaryFormat.kind(currentTag) == BinaryFormat.LEAF ? 0 : file.getInt(children);
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public String getValue() {
+        final Cursor cursor = new Cursor(node + 1);
+        file.readId(cursor, tag);
+        if (BinaryFormat.kind(tag) != BinaryFormat.LEAF) {
+            cursor.position += 12 + (int) file.getLong(cursor.position + 4);
+        }
+        return file.readString(cursor);
+    }
+
+    public int getChildCount() {
+        return childCount;
+    }
+
+    public boolean isLeaf() {
+        return childCount == 0;
+    }
+
+    /**
+     * @return the child at a position, found by skipping the siblings before it
+     */
+    public MappedElement getChild(int index) {
+        if (index < 0 || index >= childCount) {
+            throw new IndexOutOfBoundsException(index);
+        }
+        int child = childrenStart;
+        for (int i = 0; i < index; i++) {
+            child = skip(child);
+        }
+        return new MappedElement(file, child);
+    }
+
+    /**
+     * @return the first child with an id, or null if there is none
+     */
+    public MappedElement getChild(String id) {
+        int child = childrenStart;
+        for (int i = 0; i < childCount; i++) {
+            final Cursor cursor = new Cursor(child + 1);
+            if (id.equals(file.readId(cursor, file.tag(child)))) {
+                return new MappedElement(file, child);
+            }
+            child = skip(child);
+        }
+        return null;
+    }
+
+    public List<MappedElement> getChildren() {
+        final List<MappedElement> children = new ArrayList<>(childCount);
+        int child = childrenStart;
+        for (int i = 0; i < childCount; i++) {
+            children.add(new MappedElement(file, child));
+            child = skip(child);
+        }
+        return children;
+    }
+
+    /**
+     * Decodes this element and everything below it.
+     */
+    public Element toElement() {
+        return file.decode(position);
+    }
+
+    @Override
+    public String toString() {
+        return "MappedElement(id=" + id + ", children=" + childCount + ")";
+    }
+
+    /**
+     * @return the position after the id of a node
+     */
+    private int skipId(int position, int nodeTag) {
+        final Cursor cursor = new Cursor(position + 1);
+        switch (BinaryFormat.idKind(nodeTag)) {
+            case BinaryFormat.ID_INT -> cursor.varint(file.getData());
+            case BinaryFormat.ID_STRING -> file.skipString(cursor);
+            default -> {
+                // no id
+            }
+        }
+        return cursor.position;
+    }
+
+    /**
+     * @return the position after the node
+     */
+    private int skip(int position) {
+        final int nodeTag = file.tag(position);
+        final Cursor cursor = new Cursor(skipId(position, nodeTag));
+        if (BinaryFormat.kind(nodeTag) != BinaryFormat.LEAF) {
+            cursor.position += 12 + (int) file.getLong(cursor.position + 4);
+        }
+        file.skipString(cursor);
+        return cursor.position;
+    }
+
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.util.Collections;
+import java.util.List;
+
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Element read back from a {@link SpillFile}. It is filled in while decoding
+ * and sealed after, from then on it can't be modified, as the change would be
+ * lost once the content is dropped and read again.
+ */
+final class ReadOnlyElement extends Element {
+
+    private boolean sealed;
+
+    ReadOnlyElement(String id, String value) {
+        super(id, value);
+    }
+
+    ReadOnlyElement seal() {
+        sealed = true;
+        return this;
+    }
+
+    @Override
+    public List<String> getIndex() {
+        return sealed ? Collections.unmodifiableList(super.getIndex()) : super.getIndex();
+    }
+
+    @Override
+    public List<Element> getChildren() {
+        return sealed ? Collections.unmodifiableList(super.getChildren()) : super.getChildren();
+    }
+
+    @Override
+    public void setId(String id) {
+        checkUnsealed();
+        super.setId(id);
+    }
+
+    @Override
+    public void setValue(String value) {
+        checkUnsealed();
+        super.setValue(value);
+    }
+
+    @Override
+    public void setValueSequence(CharSequence value) {
+        checkUnsealed();
+        super.setValueSequence(value);
+    }
+
+    @Override
+    public void setIndex(List<String> index) {
+        checkUnsealed();
+        super.setIndex(index);
+    }
+
+    @Override
+    public void setChildren(List<Element> children) {
+        checkUnsealed();
+        super.setChildren(children);
+    }
+
+    private void checkUnsealed() {
+        if (sealed) {
+            throw new UnsupportedOperationException("Spilled elements can't be modified.");
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.util.Stack;
+
+/**
+ * Splits a parsed tree into the records the specs read, for the writers that
+ * lay them out again.
+ */
+final class Records {
+
+    @FunctionalInterface
+    interface RecordWriter {
+        void write(Element record) throws IOException;
+    }
+
+    private Records() {
+    }
+
+    /**
+     * Hands the innermost records of an element to the writer in order.
+     * Elements whose children are cells are rows, elements whose children are
+     * rows are records, and deeper elements hold records.
+     */
+    static void forEach(Element element, RecordWriter writer) throws IOException {
+        final Stack<Element> pending = new Stack<>();
+        pending.push(element);
+        while (!pending.isEmpty()) {
+            final Element e = pending.pop();
+            if (holdsRecords(e)) {
+                final List<Element> children = e.getChildren();
+                for (int i = children.size() - 1; i >= 0; i--) {
+                    pending.push(children.get(i));
+                }
+            } else {
+                writer.write(e);
+            }
+        }
+    }
+
+    /**
+     * @return whether the children of an element are records, rather than rows
+     *         or cells. Records with a single row are folded by the specs, and
+     *         rows never are, so the children are records when one holds rows,
+     *         or when one folded to a single cell sits beside a row.
+     */
+    static boolean holdsRecords(Element element) {
+        boolean cells = false;
+        boolean rows = false;
+        for (Element child : element.getChildren()) {
+            if (child.isLeaf()) {
+                cells |= child.getValueSequence() != null;
+                continue;
+            }
+            rows = true;
+            for (Element grandchild : child.getChildren()) {
+                if (!grandchild.isLeaf()) {
+                    return true;
+                }
+            }
+        }
+        return cells && rows;
+    }
+
+    /**
+     * @return whether a record holds rows, rather than being folded down to a
+     *         single row or cell
+     */
+    static boolean holdsRows(Element record) {
+        return record.getChildren().stream().anyMatch(child -> !child.isLeaf());
+    }
+
+    /**
+     * @return the lines of a record comment, or none when it has no value
+     */
+    static List<String> comments(Element record) {
+        return record.getValue() == null ? List.of() : List.of(record.getValue().split("\n", -1));
+    }
+
+}
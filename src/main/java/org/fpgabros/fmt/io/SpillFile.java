@@ -0,0 +1,135 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.lang.ref.Cleaner;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.fpgabros.fmt.exception.FormatException;
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Temporary file that elements are moved to when they don't fit in memory.
+ * Elements are written in the binary element format with their strings in
+ * place, so each one can be read back on its own, before the file is
+ * complete. The file is removed when it is closed, or once no
+ * {@link SpilledElement} refers to it any more.
+ */
+public final class SpillFile implements Closeable {
+
+    private static final Cleaner CLEANER = Cleaner.create();
+
+    private final FileChannel channel;
+    private final BinaryElementWriter writer;
+    private final Cleaner.Cleanable cleanable;
+
+    private SpillFile(FileChannel channel) {
+        this.channel = channel;
+        this.writer = new BinaryElementWriter(channel, false);
+        this.cleanable = CLEANER.register(this, new Closer(channel));
+    }
+
+    /**
+     * @param directory where the file is created, the default temporary
+     *                  directory when null
+     */
+    public static SpillFile create(Path directory) throws IOException {
+        final Path file = directory == null ? Files.createTempFile("fmt-spill", ".bin")
+                : Files.createTempFile(directory, "fmt-spill", ".bin");
+        // unlinked once opened where the platform allows it, otherwise on close
+        return new SpillFile(FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.DELETE_ON_CLOSE));
+    }
+
+    /**
+     * Writes an element to the file.
+     *
+     * @return an element that reads the value and children back when asked
+     *         for them
+     */
+    public synchronized SpilledElement spill(Element element) throws IOException {
+        final long position = writer.append(element);
+        final long length = writer.position() - position;
+        if (length > Integer.MAX_VALUE) {
+            throw new FormatException("Element " + element.getId() + " is too large to spill.");
+        }
+        return new SpilledElement(element.getId(), this, position, (int) length);
+    }
+
+    /**
+     * @return the bytes written so far
+     */
+    public synchronized long size() {
+        return writer.position();
+    }
+
+    @Override
+    public void close() {
+        cleanable.clean();
+    }
+
+    /**
+     * @return the element written at a position, which can't be modified
+     * @throws IllegalStateException when the file has been closed
+     */
+    synchronized Element read(long position, int length) throws IOException {
+        if (!channel.isOpen()) {
+            throw closed(null);
+        }
+        final ByteBuffer bytes = ByteBuffer.allocate(length);
+        try {
+            if (position + length > channel.size()) {
+                // still in the write buffer
+                writer.flush();
+            }
+            while (bytes.hasRemaining()) {
+                if (channel.read(bytes, position + bytes.position()) < 0) {
+                    throw new EOFException("Spill file ended inside an element.");
+                }
+            }
+        } catch (ClosedChannelException ex) {
+            // closed while reading
+            throw closed(ex);
+        }
+        return BinaryFile.of(bytes).decodeReadOnly(0);
+    }
+
+    private static IllegalStateException closed(Throwable cause) {
+        return new IllegalStateException("The spill file has been closed, its elements can't be read.", cause);
+    }
+
+    private record Closer(FileChannel channel) implements Runnable {
+
+        @Override
+        public void run() {
+            try {
+                channel.close();
+            } catch (IOException ex) {
+                // nothing left to do with the file
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.util.List;
+
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Element whose value and children were moved to a {@link SpillFile}. They
+ * are read back when first asked for and held through a soft reference, so
+ * the collector can drop them again when memory runs low and they are read
+ * once more on the next use. Only the id of a spilled element can be changed,
+ * its content is read only down to the cells, so no change can be lost when
+ * it is dropped. Reading the element after its spill file was closed throws
+ * an {@link IllegalStateException}.
+ */
+public final class SpilledElement extends Element {
+
+    private final SpillFile file;
+    private final long position;
+    private final int length;
+
+    private volatile SoftReference<Element> content;
+
+    SpilledElement(String id, SpillFile file, long position, int length) {
+        super(id);
+        this.file = file;
+        this.position = position;
+        this.length = length;
+    }
+
+    /**
+     * @return whether the content is held in memory
+     */
+    public boolean isLoaded() {
+        final SoftReference<Element> held = content;
+        return held != null && held.get() != null;
+    }
+
+    @Override
+    public String getValue() {
+        return content().getValue();
+    }
+
+    @Override
+    public CharSequence getValueSequence() {
+        return content().getValueSequence();
+    }
+
+    @Override
+    public List<String> getIndex() {
+        return content().getIndex();
+    }
+
+    @Override
+    public List<Element> getChildren() {
+        return content().getChildren();
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return content().isEmpty();
+    }
+
+    @Override
+    public boolean isLeaf() {
+        return content().isLeaf();
+    }
+
+    @Override
+    public Element getChild(String id) {
+        return content().getChild(id);
+    }
+
+    @Override
+    public int indexOfChild(String id) {
+        return content().indexOfChild(id);
+    }
+
+    @Override
+    public void setValue(String value) {
+        throw new UnsupportedOperationException("Spilled elements can't be modified.");
+    }
+
+    @Override
+    public void setValueSequence(CharSequence value) {
+        throw new UnsupportedOperationException("Spilled elements can't be modified.");
+    }
+
+    @Override
+    public void setIndex(List<String> index) {
+        throw new UnsupportedOperationException("Spilled elements can't be modified.");
+    }
+
+    @Override
+    public void setChildren(List<Element> children) {
+        throw new UnsupportedOperationException("Spilled elements can't be modified.");
+    }
+
+    private Element content() {
+        final SoftReference<Element> held = content;
+        Element loaded = held == null ? null : held.get();
+        if (loaded == null) {
+            try {
+                loaded = file.read(position, length);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            content = new SoftReference<>(loaded);
+        }
+        return loaded;
+    }
+
+}
@@ -0,0 +1,181 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.model.ElementSize;
+import org.fpgabros.fmt.spec.ElementBuilder;
+
+/**
+ * Builds the tree of a parse within a heap budget. The heap the tree retains
+ * is estimated with {@link ElementSize} as rows and records complete. Once
+ * the estimate is over the budget, each record that completes is moved to a
+ * temporary {@link SpillFile}, leaving a {@link SpilledElement} in its place
+ * that reads it back when the tree is traversed. Rows are spilled as well
+ * while the record they are in holds more than a quarter of the budget, so a
+ * single huge record stays within it too. The root record stays in memory.
+ * Budgets apply per parse, by passing a builder to
+ * {@code Spec.read(file, listener)}.
+ * <p>
+ * Each file read gets its own spill file, which is removed once the tree is
+ * no longer reachable.
+ */
+public class SpillingElementBuilder extends ElementBuilder {
+
+    // heap kept for a spilled element and its soft reference
+    private static final long SPILLED_SIZE = 96;
+    // rows of a record are spilled once it holds this share of the budget
+    private static final int ROW_SHARE = 4;
+
+    private final long heapBudget;
+    private final Path directory;
+
+    private SpillFile spill;
+    private long retained;
+    private long spilled;
+
+    // estimated size of the completed children of each open element, by stack size
+    private long[] sizes = new long[8];
+    // whether each open element has spilled children
+    private boolean[] spilledBelow = new boolean[8];
+
+    public SpillingElementBuilder(long heapBudget) {
+        this(heapBudget, null);
+    }
+
+    /**
+     * @param directory where the spill file is created, the default temporary
+     *                  directory when null
+     */
+    public SpillingElementBuilder(long heapBudget, Path directory) {
+        super();
+        this.heapBudget = heapBudget;
+        this.directory = directory;
+    }
+
+    public long getHeapBudget() {
+        return heapBudget;
+    }
+
+    /**
+     * @return the estimated heap retained by the tree built so far
+     */
+    public long getRetained() {
+        return retained;
+    }
+
+    /**
+     * @return the number of rows and records spilled so far
+     */
+    public long getSpilled() {
+        return spilled;
+    }
+
+    @Override
+    public void openRecord(String id) throws ParseException {
+        super.openRecord(id);
+        opened();
+    }
+
+    @Override
+    public void openRow(Integer index) throws ParseException {
+        super.openRow(index);
+        opened();
+    }
+
+    @Override
+    public void closeRow() throws ParseException {
+        super.closeRow();
+        final List<Element> siblings = getStack().peek().getChildren();
+        final long size = ElementSize.estimate(siblings.get(siblings.size() - 1));
+        retained += size;
+        completed(siblings, size, sizes[getStack().size()] + size > heapBudget / ROW_SHARE);
+    }
+
+    @Override
+    public void closeRecord() throws ParseException {
+        final int depth = getStack().size();
+        final long children = depth < sizes.length ? sizes[depth] : 0;
+        final boolean below = depth < spilledBelow.length && spilledBelow[depth];
+        super.closeRecord();
+        final List<Element> siblings = getStack().peek().getChildren();
+        final long own = ElementSize.shallow(siblings.get(siblings.size() - 1));
+        retained += own;
+        // the root record holds the whole tree, and records with spilled rows are mostly on disk already
+        completed(siblings, children + own, depth > 2 && !below);
+    }
+
+    @Override
+    public Element closeFile() throws ParseException {
+        final Element root = super.closeFile();
+        // the file belongs to the tree now, and is cleaned up along with it
+        spill = null;
+        return root;
+    }
+
+    @Override
+    public void reset() throws ParseException {
+        super.reset();
+        // let go of the file before closing it, so no spill is attempted on a closed file
+        final SpillFile abandoned = spill;
+        spill = null;
+        if (abandoned != null) {
+            abandoned.close();
+        }
+        retained = 0;
+        spilled = 0;
+    }
+
+    private void opened() {
+        final int depth = getStack().size();
+        if (depth >= sizes.length) {
+            sizes = Arrays.copyOf(sizes, depth * 2);
+            spilledBelow = Arrays.copyOf(spilledBelow, depth * 2);
+        }
+        sizes[depth] = 0;
+        spilledBelow[depth] = false;
+    }
+
+    /**
+     * Accounts for the last child of the open element, spilling it when it may
+     * be and the tree is over budget.
+     */
+    private void completed(List<Element> siblings, long size, boolean spillable) throws ParseException {
+        final int parent = getStack().size();
+        if (spillable && retained > heapBudget) {
+            try {
+                if (spill == null) {
+                    spill = SpillFile.create(directory);
+                }
+                siblings.set(siblings.size() - 1, spill.spill(siblings.get(siblings.size() - 1)));
+            } catch (IOException ex) {
+                throw new ParseException(ex);
+            }
+            retained -= size - SPILLED_SIZE;
+            size = SPILLED_SIZE;
+            spilledBelow[parent] = true;
+            spilled++;
+        }
+        sizes[parent] += size;
+    }
+
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.fpgabros.fmt.exception.FormatException;
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.spec.TextSpec;
+
+/**
+ * Writes elements as delimited text in the layout of a {@link TextSpec}, so
+ * that reading the output with the same spec gives back the same tree.
+ * <p>
+ * Elements whose children are cells are written as rows, elements whose
+ * children are rows as records, with their value as comment lines. Deeper
+ * elements hold records, which are separated by blank lines when the spec is
+ * multipart. The delimiter is written as is, so it should not contain
+ * regular expression syntax. Values that can't be read back, such as ones
+ * containing the delimiter or a line break, fail with a
+ * {@link FormatException}.
+ */
+public class TextElementWriter extends AppendableElementWriter {
+
+    private final String delimiter;
+    private final String commentToken;
+    private final boolean multipart;
+
+    private boolean separate;
+
+    public TextElementWriter(Appendable out, TextSpec spec) {
+        super(out);
+        this.delimiter = spec.getDelimiter();
+        this.commentToken = spec.getCommentToken();
+        this.multipart = spec.isMultipart();
+    }
+
+    /**
+     * Writes a tree to a file in the layout of a spec, so that reading the
+     * file with the spec gives back the same tree.
+     */
+    public static void write(Element element, Path path, TextSpec spec) throws IOException {
+        try (TextElementWriter writer = new TextElementWriter(Files.newBufferedWriter(path, spec.getCharset()), spec)) {
+            writer.write(element);
+        }
+    }
+
+    @Override
+    public void write(Element element) throws IOException {
+        if (element.isEmpty()) {
+            return;
+        }
+        separate = false;
+        Records.forEach(element, this::writeRecord);
+    }
+
+    private void writeRecord(Element record) throws IOException {
+        if (separate && multipart) {
+            out.append('\n');
+        }
+        separate = true;
+
+        if (record.isLeaf()) {
+            // a record folded down to a single cell
+            writeCells(List.of(record));
+        } else if (Records.holdsRows(record)) {
+            for (String comment : Records.comments(record)) {
+                out.append(commentToken).append(comment).append('\n');
+            }
+            for (Element row : record.getChildren()) {
+                writeCells(row.isLeaf() && row.getValue() != null ? List.of(row) : row.getChildren());
+            }
+        } else {
+            // a record folded down to a single row
+            writeCells(record.getChildren());
+        }
+    }
+
+    private void writeCells(List<Element> cells) throws IOException {
+        if (cells.isEmpty() || (cells.size() == 1 && cells.get(0).getValue() == null)) {
+            // a row without cells
+            out.append(delimiter).append('\n');
+            return;
+        }
+        final StringBuilder line = new StringBuilder();
+        for (int i = 0; i < cells.size(); i++) {
+            final String value = cells.get(i).getValue() == null ? "" : cells.get(i).getValue();
+            if (value.contains(delimiter) || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+                throw new FormatException("Value can't be written as a delimited field: " + value);
+            }
+            if (i > 0) {
+                line.append(delimiter);
+            }
+            line.append(value);
+        }
+        if (line.toString().isBlank()) {
+            throw new FormatException("Row would be read back as a blank line.");
+        }
+        if (line.toString().stripLeading().startsWith(commentToken)) {
+            throw new FormatException("Row would be read back as a comment: " + line);
+        }
+        out.append(line).append('\n');
+    }
+
+}
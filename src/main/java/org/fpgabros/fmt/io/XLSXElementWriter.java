@@ -0,0 +1,211 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.util.WorkbookUtil;
+import org.apache.poi.xssf.streaming.SXSSFSheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.fpgabros.fmt.exception.FormatException;
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.model.NumberValue;
+import org.fpgabros.fmt.spec.XLSXSpec;
+
+/**
+ * Writes elements as an XLSX workbook in the layout of an {@link XLSXSpec},
+ * so that reading the output with the same spec gives back the same tree.
+ * <p>
+ * Rows are streamed through a {@link SXSSFWorkbook}, which keeps only a
+ * window of recent rows in memory and flushes the rest to a temporary file,
+ * and strings are written inline rather than to a shared table. The workbook
+ * is written to the output when the writer is closed.
+ * <p>
+ * An element deeper than a sheet, or one with named children, is written as a
+ * workbook with a sheet per child; any other element as a single sheet.
+ * Records are separated by a blank row and their value is written as comment
+ * rows. Rows and cells are placed at the row and column their id gives when
+ * it is free, so row and cell ids survive the round trip. Values received as
+ * numbers are written as numeric cells, everything else as strings. Rows that
+ * would be read back as a comment or a separator fail with a
+ * {@link FormatException}.
+ */
+public class XLSXElementWriter implements ElementWriter {
+
+    /**
+     * Rows kept in memory per sheet by default.
+     */
+    public static final int DEFAULT_ROW_WINDOW = SXSSFWorkbook.DEFAULT_WINDOW_SIZE;
+
+    private final OutputStream out;
+    private final String commentToken;
+    private final SXSSFWorkbook workbook;
+
+    private SXSSFSheet sheet;
+    // next row that can be written in the current sheet
+    private int nextRow;
+
+    public XLSXElementWriter(OutputStream out, XLSXSpec spec) {
+        this(out, spec, DEFAULT_ROW_WINDOW);
+    }
+
+    /**
+     * @param rowWindow the number of rows of a sheet kept in memory before
+     *                  they are flushed to disk
+     */
+    public XLSXElementWriter(OutputStream out, XLSXSpec spec, int rowWindow) {
+        this.out = out;
+        this.commentToken = spec.getCommentToken();
+        this.workbook = new SXSSFWorkbook(rowWindow);
+    }
+
+    /**
+     * Writes a tree to a workbook in the layout of a spec, streaming the rows
+     * so that only a window of them is held in memory.
+     */
+    public static void write(Element element, Path path, XLSXSpec spec) throws IOException {
+        try (XLSXElementWriter writer = new XLSXElementWriter(Files.newOutputStream(path), spec)) {
+            writer.write(element);
+        }
+    }
+
+    /**
+     * Adds the sheets of an element to the workbook.
+     */
+    @Override
+    public void write(Element element) throws IOException {
+        if (element.isEmpty()) {
+            return;
+        }
+        if (holdsSheets(element)) {
+            for (Element child : element.getChildren()) {
+                writeSheet(child.getId(), child);
+            }
+        } else {
+            writeSheet(null, element);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        try (out) {
+            workbook.write(out);
+        } finally {
+            // remove the temporary files backing the sheets
+            workbook.dispose();
+            workbook.close();
+        }
+    }
+
+    private void writeSheet(String name, Element element) throws IOException {
+        try {
+            sheet = name == null ? workbook.createSheet()
+                    : workbook.createSheet(WorkbookUtil.createSafeSheetName(name));
+        } catch (IllegalArgumentException ex) {
+            throw new FormatException("Sheet can't be added to the workbook: " + name, ex);
+        }
+        nextRow = 0;
+        if (element.isEmpty()) {
+            // a sheet without rows
+            return;
+        }
+        Records.forEach(element, this::writeRecord);
+    }
+
+    private void writeRecord(Element record) throws IOException {
+        final List<String> comments = Records.comments(record);
+        if (record.isLeaf()) {
+            // a record folded down to a single cell
+            writeCells(nextRow, List.of(record));
+        } else if (Records.holdsRows(record)) {
+            final List<Element> rows = record.getChildren();
+            // place the record so its first row keeps its id
+            final int first = Math.max(nextRow, index(rows.get(0).getId()) - comments.size());
+            int r = first;
+            for (String comment : comments) {
+                sheet.createRow(r++).createCell(0).setCellValue(commentToken + comment);
+            }
+            for (Element row : rows) {
+                writeCells(r++, row.isLeaf() && row.getValue() != null ? List.of(row) : row.getChildren());
+            }
+        } else {
+            // a record folded down to a single row
+            writeCells(nextRow, record.getChildren());
+        }
+        // leave a blank row before the next record
+        nextRow = sheet.getLastRowNum() + 2;
+    }
+
+    private void writeCells(int rowNum, List<Element> cells) throws IOException {
+        final Row row = sheet.createRow(rowNum);
+        boolean blank = true;
+        int column = 0;
+        for (Element element : cells) {
+            column = Math.max(column, index(element.getId()));
+            final Cell cell = row.createCell(column++);
+            final CharSequence value = element.getValueSequence();
+            if (value instanceof NumberValue number) {
+                cell.setCellValue(number.doubleValue());
+                blank = false;
+            } else if (value != null && !value.isEmpty()) {
+                final String text = value.toString();
+                if (blank && text.stripLeading().startsWith(commentToken)) {
+                    throw new FormatException("Row would be read back as a comment: " + text);
+                }
+                cell.setCellValue(text);
+                blank = blank && text.isBlank();
+            }
+        }
+        if (blank) {
+            throw new FormatException("Row would be read back as a blank row.");
+        }
+    }
+
+    /**
+     * @return whether the children of an element are sheets, rather than
+     *         records, rows or cells
+     */
+    private static boolean holdsSheets(Element element) {
+        for (Element child : element.getChildren()) {
+            if ((!child.isLeaf() && index(child.getId()) < 0) || Records.holdsRecords(child)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the id as a row or column index, or -1 when it is not one
+     */
+    private static int index(String id) {
+        if (id == null || id.isEmpty() || id.length() > 9) {
+            return -1;
+        }
+        for (int i = 0; i < id.length(); i++) {
+            if (id.charAt(i) < '0' || id.charAt(i) > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(id);
+    }
+
+}
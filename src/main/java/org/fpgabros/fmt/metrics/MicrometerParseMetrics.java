@@ -0,0 +1,84 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.metrics;
+
+import java.util.concurrent.TimeUnit;
+
+import org.fpgabros.fmt.exception.ParseException;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+
+/**
+ * Publishes parse telemetry to a Micrometer registry. Meters are tagged with
+ * the name of the spec, failures are additionally tagged with the exception
+ * type.
+ */
+public class MicrometerParseMetrics implements ParseMetrics {
+
+    public static final String PREFIX = "fmt.parse";
+
+    private final MeterRegistry registry;
+
+    public MicrometerParseMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    static ParseMetrics global() {
+        return new MicrometerParseMetrics(Metrics.globalRegistry);
+    }
+
+    @Override
+    public void parsed(ParseStats stats) {
+        final String spec = stats.spec();
+        counter("files", spec).increment();
+        counter("records", spec).increment(stats.records());
+        counter("rows", spec).increment(stats.rows());
+        counter("cells", spec).increment(stats.cells());
+        counter("comments", spec).increment(stats.comments());
+        if (stats.bytes() >= 0) {
+            Counter.builder(PREFIX + ".bytes").baseUnit("bytes").tag("spec", spec).register(registry)
+                    .increment(stats.bytes());
+        }
+        timer("duration", spec, stats.parseNanos());
+        timer("first.row", spec, stats.firstRowNanos());
+        timer("fold", spec, stats.foldNanos());
+        DistributionSummary.builder(PREFIX + ".depth").tag("spec", spec).register(registry)
+                .record(stats.peakDepth());
+    }
+
+    @Override
+    public void failed(String spec, Throwable cause, long nanos) {
+        // parse exceptions mostly wrap the actual problem
+        final Throwable type = cause instanceof ParseException && cause.getCause() != null ? cause.getCause() : cause;
+        Counter.builder(PREFIX + ".failures").tag("spec", spec).tag("exception", type.getClass().getSimpleName())
+                .register(registry).increment();
+        timer("failed.duration", spec, nanos);
+    }
+
+    private Counter counter(String name, String spec) {
+        return registry.counter(PREFIX + "." + name, "spec", spec);
+    }
+
+    private void timer(String name, String spec, long nanos) {
+        if (nanos >= 0) {
+            registry.timer(PREFIX + "." + name, "spec", spec).record(nanos, TimeUnit.NANOSECONDS);
+        }
+    }
+
+}
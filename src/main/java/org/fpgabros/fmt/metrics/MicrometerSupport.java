@@ -0,0 +1,40 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.metrics;
+
+/**
+ * Keeps Micrometer classes from loading unless Micrometer is available. Only
+ * the class name is referenced here, verifying any code that hands Micrometer
+ * types around already loads them.
+ */
+final class MicrometerSupport {
+
+    static final boolean PRESENT = isPresent();
+
+    private MicrometerSupport() {
+    }
+
+    private static boolean isPresent() {
+        try {
+            Class.forName("io.micrometer.core.instrument.MeterRegistry", false,
+                    MicrometerSupport.class.getClassLoader());
+            return true;
+        } catch (ClassNotFoundException | LinkageError ex) {
+            return false;
+        }
+    }
+
+}
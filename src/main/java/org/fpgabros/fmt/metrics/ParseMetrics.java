@@ -0,0 +1,48 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.metrics;
+
+/**
+ * Destination for parse telemetry.
+ */
+public interface ParseMetrics {
+
+    /**
+     * Records a file that parsed successfully.
+     */
+    void parsed(ParseStats stats);
+
+    /**
+     * Records a file that failed to parse.
+     *
+     * @param nanos time spent before the failure
+     */
+    void failed(String spec, Throwable cause, long nanos);
+
+    static ParseMetrics noop() {
+        return NoopParseMetrics.INSTANCE;
+    }
+
+    /**
+     * @return metrics published to the global Micrometer registry when
+     *         Micrometer is on the classpath, otherwise metrics that are
+     *         discarded
+     */
+    static ParseMetrics create() {
+        return MicrometerSupport.PRESENT ? MicrometerParseMetrics.global() : noop();
+    }
+
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.metrics;
+
+/**
+ * Counts and timings gathered while parsing a single file. Times are in
+ * nanoseconds, a phase that did not happen is -1.
+ *
+ * @param spec          name of the spec that parsed the file
+ * @param bytes         size of the file, -1 when unknown
+ * @param firstRowNanos time from opening the file to the first row
+ * @param parseNanos    time from opening the file to closing it
+ * @param foldNanos     total time spent closing records
+ * @param peakDepth     deepest the element stack went
+ */
+public record ParseStats(String spec, long records, long rows, long cells, long comments, long bytes,
+        long firstRowNanos, long parseNanos, long foldNanos, int peakDepth) {
+}
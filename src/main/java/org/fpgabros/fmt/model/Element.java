@@ -15,22 +15,54 @@
  */
 package org.fpgabros.fmt.model;
 
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.AbstractList;
 import java.util.ArrayList;
+import java.util.ConcurrentModificationException;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.RandomAccess;
 
+import org.fpgabros.fmt.util.Stack;
+
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 @Data
 public class Element {
 
+    // children at which lookups switch from a scan to the id index
+    private static final int INDEX_THRESHOLD = 8;
+
     private String id;
 
     private String value;
 
+    // value still held by the input, which decodes and caches it when read
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient volatile CharSequence pendingValue;
+
     private final List<String> index;
 
     private final List<Element> children;
 
+    // lazily built id to child index, valid while the children are unmodified
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private transient volatile ChildIndex childIndex;
+
     public Element() {
         this(null, null);
     }
@@ -51,7 +83,7 @@ public class Element {
         this.id = id;
         this.value = value;
         this.index = new ArrayList<>();
-        this.children = new ArrayList<>();
+        this.children = new ChildList();
     }
 
     public Element(String id, String value, List<String> index, List<Element> children) {
@@ -60,6 +92,55 @@ public class Element {
         this.children.addAll(children);
     }
 
+    public String getValue() {
+        final CharSequence pending = pendingValue;
+        // pending values cache their own decoding, so reads leave the element as is
+        return pending != null ? pending.toString() : value;
+    }
+
+    public void setValue(String value) {
+        this.value = value;
+        this.pendingValue = null;
+    }
+
+    /**
+     * @return the value without decoding it, which may be a view into the
+     *         parsed input
+     */
+    public CharSequence getValueSequence() {
+        final CharSequence pending = pendingValue;
+        return pending != null ? pending : value;
+    }
+
+    /**
+     * Sets a value that is only turned into a String when
+     * {@link #getValue()} is called.
+     */
+    public void setValueSequence(CharSequence value) {
+        if (value == null || value instanceof String) {
+            setValue((String) value);
+        } else {
+            this.value = null;
+            this.pendingValue = value;
+        }
+    }
+
+    /**
+     * @return the value as a number, without formatting and parsing it again
+     *         when it was received as one
+     * @throws NumberFormatException when the value is missing or not a number
+     */
+    public double asDouble() {
+        final CharSequence sequence = getValueSequence();
+        if (sequence instanceof NumberValue number) {
+            return number.doubleValue();
+        }
+        if (sequence == null) {
+            throw new NumberFormatException("Element " + id + " has no value.");
+        }
+        return Double.parseDouble(sequence.toString());
+    }
+
     public void setIndex(List<String> index) {
         this.index.clear();
         this.index.addAll(index);
@@ -71,38 +152,240 @@ public class Element {
     }
 
     public boolean isEmpty() {
-        return value == null && children.isEmpty();
+        return getValueSequence() == null && children.isEmpty();
     }
 
     public boolean isLeaf() {
         return children.isEmpty();
     }
 
+    /**
+     * Finds the first child with an id. Elements with many children build an
+     * id index on first use, which is dropped whenever the children are
+     * modified. Changing the id of a child that is already indexed is not
+     * detected. The index is built privately and published whole, so threads
+     * may look children up concurrently as long as none modifies the tree.
+     *
+     * @return the child, or null if there is none with the id
+     */
+    public Element getChild(String id) {
+        final int position = indexOfChild(id);
+        return position < 0 ? null : children.get(position);
+    }
+
+    /**
+     * @see #getChild(String)
+     * @return the position of the first child with an id, or -1 if there is
+     *         none
+     */
+    public int indexOfChild(String id) {
+        if (children.size() < INDEX_THRESHOLD) {
+            for (int i = 0; i < children.size(); i++) {
+                if (id.equals(children.get(i).getId())) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        final int version = ((ChildList) children).version();
+        ChildIndex ids = childIndex;
+        if (ids == null || ids.version() != version) {
+            final Map<String, Integer> positions = HashMap.newHashMap(children.size());
+            for (int i = 0; i < children.size(); i++) {
+                final String childId = children.get(i).getId();
+                if (childId != null) {
+                    positions.putIfAbsent(childId, i);
+                }
+            }
+            ids = new ChildIndex(version, positions);
+            childIndex = ids;
+        }
+        final Integer position = ids.positions().get(id);
+        return position == null ? -1 : position;
+    }
+
+    /**
+     * Finds the element at a path of ids below this element.
+     *
+     * @see ElementPath
+     * @return the first element matching the path, or null if there is none
+     */
+    public Element find(String path) {
+        return ElementPath.compile(path).find(this);
+    }
+
+    /**
+     * Finds all elements matching a path that may contain wildcards and
+     * ranges.
+     *
+     * @see ElementPath
+     */
+    public List<Element> findAll(String path) {
+        return ElementPath.compile(path).findAll(this);
+    }
+
     public String dump(int indent) {
         if (indent <= 0) {
             return this.toString();
-        } else {
-            return dump(indent, 0);
         }
+        final StringBuilder sb = new StringBuilder();
+        try {
+            dump(sb, indent);
+        } catch (IOException ex) {
+            // not thrown by a StringBuilder
+            throw new UncheckedIOException(ex);
+        }
+        return sb.toString();
     }
 
-    private String dump(int indent, int index) {
-        StringBuilder sb = new StringBuilder();
-        for (int i = 0; i < indent * index; i++) {
-            sb.append(" ");
+    /**
+     * Writes the tree below this element one element per line, each indented
+     * by {@code indent} spaces per level.
+     */
+    public void dump(Appendable out, int indent) throws IOException {
+        final Stack<Element> elements = new Stack<>();
+        final Stack<Integer> levels = new Stack<>();
+        elements.push(this);
+        levels.push(0);
+        while (!elements.isEmpty()) {
+            final Element e = elements.pop();
+            final int level = levels.pop();
+            for (int i = 0; i < indent * level; i++) {
+                out.append(' ');
+            }
+            out.append("E(").append(e.getId()).append(')');
+            if (e.getValue() != null) {
+                out.append('=').append(e.getValue());
+            }
+            out.append('\n');
+            // children in reverse, so the first is written next
+            for (int i = e.getChildren().size() - 1; i >= 0; i--) {
+                elements.push(e.getChildren().get(i));
+                levels.push(level + 1);
+            }
         }
-        sb.append("E(");
-        sb.append(id);
-        sb.append(")");
-        if (value != null) {
-            sb.append("=");
-            sb.append(value);
+    }
+
+    /**
+     * Child positions by id, and the version of the children they were taken
+     * at.
+     */
+    private record ChildIndex(int version, Map<String, Integer> positions) {
+    }
+
+    /**
+     * Child list that exposes a version, so the id index can tell when it is
+     * stale. The version moves on every structural modification and also when
+     * a child is replaced, also through a sub list. Replacing is counted
+     * apart from the modification count, which iterators expect to stay put.
+     */
+    private static final class ChildList extends ArrayList<Element> {
+
+        private static final long serialVersionUID = 1L;
+
+        private int replaced;
+
+        @Override
+        public Element set(int index, Element element) {
+            replaced++;
+            return super.set(index, element);
         }
-        sb.append("\n");
-        for (Element child : children) {
-            sb.append(child.dump(indent, index + 1));
+
+        @Override
+        public List<Element> subList(int fromIndex, int toIndex) {
+            Objects.checkFromToIndex(fromIndex, toIndex, size());
+            return new ChildRange(this, fromIndex, toIndex);
         }
-        return sb.toString();
+
+        int modCount() {
+            return modCount;
+        }
+
+        int version() {
+            return modCount + replaced;
+        }
+
+        void removeChildren(int fromIndex, int toIndex) {
+            removeRange(fromIndex, toIndex);
+        }
+
+    }
+
+    /**
+     * Sub list view that goes through the child list, unlike the one of
+     * {@link ArrayList} which replaces elements behind its back.
+     */
+    private static final class ChildRange extends AbstractList<Element> implements RandomAccess {
+
+        private final ChildList list;
+        private final int offset;
+        private int size;
+        private int expectedModCount;
+
+        ChildRange(ChildList list, int fromIndex, int toIndex) {
+            this.list = list;
+            this.offset = fromIndex;
+            this.size = toIndex - fromIndex;
+            this.expectedModCount = list.modCount();
+        }
+
+        @Override
+        public Element get(int index) {
+            checkForComodification();
+            Objects.checkIndex(index, size);
+            return list.get(offset + index);
+        }
+
+        @Override
+        public Element set(int index, Element element) {
+            checkForComodification();
+            Objects.checkIndex(index, size);
+            return list.set(offset + index, element);
+        }
+
+        @Override
+        public void add(int index, Element element) {
+            checkForComodification();
+            Objects.checkIndex(index, size + 1);
+            list.add(offset + index, element);
+            changed(1);
+        }
+
+        @Override
+        public Element remove(int index) {
+            checkForComodification();
+            Objects.checkIndex(index, size);
+            final Element removed = list.remove(offset + index);
+            changed(-1);
+            return removed;
+        }
+
+        @Override
+        protected void removeRange(int fromIndex, int toIndex) {
+            checkForComodification();
+            list.removeChildren(offset + fromIndex, offset + toIndex);
+            changed(fromIndex - toIndex);
+        }
+
+        @Override
+        public int size() {
+            checkForComodification();
+            return size;
+        }
+
+        private void changed(int delta) {
+            size += delta;
+            expectedModCount = list.modCount();
+            modCount++;
+        }
+
+        private void checkForComodification() {
+            if (list.modCount() != expectedModCount) {
+                throw new ConcurrentModificationException();
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,182 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang3.StringUtils;
+
+/**
+ * A path of child ids separated by {@code /}, such as {@code Sheet1/3/2/5}.
+ * Besides plain ids a segment may be
+ * <ul>
+ * <li>{@code *} to match every child</li>
+ * <li>{@code a..b} to match children with integer ids from a to b inclusive,
+ * either end may be left open ({@code 2..}, {@code ..5})</li>
+ * </ul>
+ * For example {@code 0..9/2} selects row 2 of the first ten records, and a
+ * {@code *} in place of the range selects it across all records. Compiled
+ * paths are immutable and can be reused.
+ */
+public final class ElementPath {
+
+    private final String path;
+    private final List<Segment> segments;
+
+    private ElementPath(String path, List<Segment> segments) {
+        this.path = path;
+        this.segments = segments;
+    }
+
+    public static ElementPath compile(String path) {
+        final List<Segment> segments = new ArrayList<>();
+        for (String part : StringUtils.split(path, '/')) {
+            segments.add(Segment.parse(part));
+        }
+        return new ElementPath(path, List.copyOf(segments));
+    }
+
+    /**
+     * @return the first element matching the path, or null if there is none
+     */
+    public Element find(Element root) {
+        return find(root, 0);
+    }
+
+    /**
+     * @return every element matching the path, in tree order
+     */
+    public List<Element> findAll(Element root) {
+        List<Element> current = List.of(root);
+        for (Segment segment : segments) {
+            final List<Element> next = new ArrayList<>();
+            for (Element element : current) {
+                segment.collect(element, next);
+            }
+            if (next.isEmpty()) {
+                return next;
+            }
+            current = next;
+        }
+        return current instanceof ArrayList ? current : new ArrayList<>(current);
+    }
+
+    private Element find(Element element, int depth) {
+        if (depth == segments.size()) {
+            return element;
+        }
+        final Segment segment = segments.get(depth);
+        if (segment.id != null) {
+            final Element child = element.getChild(segment.id);
+            return child == null ? null : find(child, depth + 1);
+        }
+        // wildcards and ranges, take the first branch that matches fully
+        final List<Element> candidates = new ArrayList<>();
+        segment.collect(element, candidates);
+        for (Element candidate : candidates) {
+            final Element found = find(candidate, depth + 1);
+            if (found != null) {
+                return found;
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String toString() {
+        return path;
+    }
+
+    private static final class Segment {
+
+        // plain id, or null for a wildcard or range
+        private final String id;
+        private final long from;
+        private final long to;
+
+        private Segment(String id, long from, long to) {
+            this.id = id;
+            this.from = from;
+            this.to = to;
+        }
+
+        static Segment parse(String part) {
+            if ("*".equals(part)) {
+                return new Segment(null, Long.MIN_VALUE, Long.MAX_VALUE);
+            }
+            final int dots = part.indexOf("..");
+            if (dots >= 0) {
+                final String start = part.substring(0, dots);
+                final String end = part.substring(dots + 2);
+                try {
+                    return new Segment(null, start.isEmpty() ? Long.MIN_VALUE : Long.parseLong(start),
+                            end.isEmpty() ? Long.MAX_VALUE : Long.parseLong(end));
+                } catch (NumberFormatException ex) {
+                    throw new IllegalArgumentException("Invalid range in path: " + part, ex);
+                }
+            }
+            return new Segment(part, 0, 0);
+        }
+
+        void collect(Element element, List<Element> out) {
+            if (id != null) {
+                final Element child = element.getChild(id);
+                if (child != null) {
+                    out.add(child);
+                }
+            } else if (from == Long.MIN_VALUE && to == Long.MAX_VALUE) {
+                out.addAll(element.getChildren());
+            } else if (from != Long.MIN_VALUE && to != Long.MAX_VALUE && to - from < element.getChildren().size()) {
+                // narrow range, look each id up and put the hits in tree order
+                final int[] positions = new int[(int) (to - from + 1)];
+                int found = 0;
+                for (long i = from; i <= to; i++) {
+                    final int position = element.indexOfChild(Long.toString(i));
+                    if (position >= 0) {
+                        positions[found++] = position;
+                    }
+                }
+                Arrays.sort(positions, 0, found);
+                final List<Element> children = element.getChildren();
+                for (int i = 0; i < found; i++) {
+                    out.add(children.get(positions[i]));
+                }
+            } else {
+                for (Element child : element.getChildren()) {
+                    final long value = parseId(child.getId());
+                    if (value >= from && value <= to && value != Long.MIN_VALUE) {
+                        out.add(child);
+                    }
+                }
+            }
+        }
+
+        private static long parseId(String id) {
+            if (id == null) {
+                return Long.MIN_VALUE;
+            }
+            try {
+                return Long.parseLong(id);
+            } catch (NumberFormatException ex) {
+                return Long.MIN_VALUE;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.model;
+
+import org.fpgabros.fmt.util.Stack;
+
+/**
+ * Rough estimate of the heap retained by an {@link Element} tree, for sizing
+ * caches and budgets. Assumes compressed references and compact strings.
+ * Lazy values are measured as they are, without formatting them as text.
+ */
+public final class ElementSize {
+
+    // object header plus fields of an element
+    private static final long ELEMENT = 32;
+    // an array list and its backing array, without the elements
+    private static final long LIST = 24 + 16;
+    private static final long REFERENCE = 4;
+    // a string and its backing array, without the characters
+    private static final long STRING = 24 + 16;
+    // a number value and its double, text formatted on read is not counted
+    private static final long NUMBER = 24;
+    // any other char sequence, one byte per char
+    private static final long SEQUENCE = 32;
+
+    private ElementSize() {
+    }
+
+    public static long estimate(Element element) {
+        long size = 0;
+        final Stack<Element> pending = new Stack<>();
+        pending.push(element);
+        while (!pending.isEmpty()) {
+            final Element e = pending.pop();
+            size += shallow(e);
+            for (Element child : e.getChildren()) {
+                pending.push(child);
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @return the estimate for an element alone, counting the references to
+     *         its children but not the children themselves
+     */
+    public static long shallow(Element element) {
+        long size = ELEMENT + 2 * LIST + REFERENCE * (element.getChildren().size() + element.getIndex().size());
+        size += string(element.getId()) + value(element.getValueSequence());
+        for (String index : element.getIndex()) {
+            size += string(index);
+        }
+        return size;
+    }
+
+    private static long value(CharSequence value) {
+        if (value == null || value instanceof String) {
+            return string((String) value);
+        }
+        if (value instanceof NumberValue) {
+            return NUMBER;
+        }
+        return SEQUENCE + value.length();
+    }
+
+    private static long string(String s) {
+        return s == null ? 0 : STRING + s.length();
+    }
+
+}
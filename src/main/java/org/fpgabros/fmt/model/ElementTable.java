@@ -0,0 +1,386 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.fpgabros.fmt.util.Stack;
+
+/**
+ * Compact, table oriented storage for the same tree an {@link Element}
+ * describes. Nodes are rows in a set of primitive columns, numeric ids are
+ * kept as ints and all values share a single character store, so a cell costs
+ * a few ints instead of an object graph. Numeric values are kept as doubles
+ * and only formatted when read as text. {@link Element} views are built on
+ * demand.
+ */
+public class ElementTable {
+
+    public static final int NONE = -1;
+
+    // ids that are not plain integers are kept in the name table
+    private static final int NULL_ID = Integer.MIN_VALUE;
+    private static final int NULL_VALUE = -1;
+    // value length of a numeric value, whose start indexes the numbers
+    private static final int NUMBER_VALUE = -2;
+
+    private int size;
+    private int[] ids;
+    private int[] valueStarts;
+    private int[] valueLengths;
+    private int[] firstChildren;
+    private int[] lastChildren;
+    private int[] nextSiblings;
+    private int[] childCounts;
+
+    private char[] chars;
+    private int charCount;
+
+    private double[] numbers;
+    private int numberCount;
+
+    private final List<String> names;
+    private final Map<String, Integer> nameIndex;
+
+    private int root = NONE;
+
+    public ElementTable() {
+        this(64);
+    }
+
+    public ElementTable(int capacity) {
+        capacity = Math.max(capacity, 1);
+        this.ids = new int[capacity];
+        this.valueStarts = new int[capacity];
+        this.valueLengths = new int[capacity];
+        this.firstChildren = new int[capacity];
+        this.lastChildren = new int[capacity];
+        this.nextSiblings = new int[capacity];
+        this.childCounts = new int[capacity];
+        this.chars = new char[capacity * 4];
+        this.numbers = new double[16];
+        this.names = new ArrayList<>();
+        this.nameIndex = new HashMap<>();
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public int getRoot() {
+        return root;
+    }
+
+    public void setRoot(int node) {
+        this.root = node;
+    }
+
+    public int addNode(int id) {
+        return addNode(id, null);
+    }
+
+    public int addNode(int id, CharSequence value) {
+        final int node = allocate();
+        ids[node] = id >= 0 ? id : nameId(Integer.toString(id));
+        setValue(node, value);
+        return node;
+    }
+
+    public int addNode(String id) {
+        return addNode(id, null);
+    }
+
+    public int addNode(String id, CharSequence value) {
+        final int node = allocate();
+        ids[node] = encodeId(id);
+        setValue(node, value);
+        return node;
+    }
+
+    public String getId(int node) {
+        final int id = ids[node];
+        if (id >= 0) {
+            return Integer.toString(id);
+        }
+        return id == NULL_ID ? null : names.get(-id - 1);
+    }
+
+    /**
+     * @return the numeric id of a node, or {@link #NONE} when the id is not a
+     *         non negative integer
+     */
+    public int getIntId(int node) {
+        return ids[node] >= 0 ? ids[node] : NONE;
+    }
+
+    public String getValue(int node) {
+        if (valueLengths[node] == NULL_VALUE) {
+            return null;
+        }
+        if (valueLengths[node] == NUMBER_VALUE) {
+            return Double.toString(numbers[valueStarts[node]]);
+        }
+        return new String(chars, valueStarts[node], valueLengths[node]);
+    }
+
+    public boolean hasValue(int node) {
+        return valueLengths[node] != NULL_VALUE;
+    }
+
+    public boolean isNumber(int node) {
+        return valueLengths[node] == NUMBER_VALUE;
+    }
+
+    /**
+     * @return the value of a node as a number
+     * @throws NumberFormatException when the value is missing or not a number
+     */
+    public double getDouble(int node) {
+        if (valueLengths[node] == NUMBER_VALUE) {
+            return numbers[valueStarts[node]];
+        }
+        final String value = getValue(node);
+        if (value == null) {
+            throw new NumberFormatException("Node " + node + " has no value.");
+        }
+        return Double.parseDouble(value);
+    }
+
+    public void setDouble(int node, double value) {
+        if (numberCount == numbers.length) {
+            numbers = Arrays.copyOf(numbers, numberCount * 2);
+        }
+        valueStarts[node] = numberCount;
+        valueLengths[node] = NUMBER_VALUE;
+        numbers[numberCount++] = value;
+    }
+
+    public void setValue(int node, CharSequence value) {
+        if (value == null) {
+            valueStarts[node] = 0;
+            valueLengths[node] = NULL_VALUE;
+            return;
+        }
+        valueStarts[node] = charCount;
+        valueLengths[node] = value.length();
+        appendChars(value);
+    }
+
+    /**
+     * Appends to the value of a node, joining it to any existing value with a
+     * newline the same way comments are merged into a record.
+     */
+    public void appendValue(int node, CharSequence value) {
+        if (valueLengths[node] == NULL_VALUE) {
+            setValue(node, value);
+            return;
+        }
+        if (valueLengths[node] == NUMBER_VALUE) {
+            setValue(node, getValue(node));
+        }
+        final int start = valueStarts[node];
+        final int length = valueLengths[node];
+        if (start + length != charCount) {
+            // not the last value written, move it to the end first
+            ensureChars(length);
+            System.arraycopy(chars, start, chars, charCount, length);
+            valueStarts[node] = charCount;
+            charCount += length;
+        }
+        ensureChars(1);
+        chars[charCount++] = '\n';
+        appendChars(value);
+        valueLengths[node] = length + 1 + value.length();
+    }
+
+    public int getChildCount(int node) {
+        return childCounts[node];
+    }
+
+    public int getFirstChild(int node) {
+        return firstChildren[node];
+    }
+
+    public int getNextSibling(int node) {
+        return nextSiblings[node];
+    }
+
+    public boolean isLeaf(int node) {
+        return childCounts[node] == 0;
+    }
+
+    public void addChild(int parent, int child) {
+        nextSiblings[child] = NONE;
+        if (childCounts[parent] == 0) {
+            firstChildren[parent] = child;
+        } else {
+            nextSiblings[lastChildren[parent]] = child;
+        }
+        lastChildren[parent] = child;
+        childCounts[parent]++;
+    }
+
+    /**
+     * Collapses single child chains into the node, the same as records are
+     * folded while building an {@link Element} tree.
+     */
+    public void fold(int node) {
+        while (childCounts[node] == 1) {
+            final int child = firstChildren[node];
+            valueStarts[node] = valueStarts[child];
+            valueLengths[node] = valueLengths[child];
+            firstChildren[node] = firstChildren[child];
+            lastChildren[node] = lastChildren[child];
+            childCounts[node] = childCounts[child];
+        }
+    }
+
+    public Element toElement() {
+        return root == NONE ? null : getElement(root);
+    }
+
+    /**
+     * Builds an {@link Element} tree for a node and everything below it.
+     */
+    public Element getElement(int node) {
+        final Element top = newElement(node);
+        final Stack<Element> elements = new Stack<>();
+        final Stack<Integer> nodes = new Stack<>();
+        elements.push(top);
+        nodes.push(node);
+        while (!nodes.isEmpty()) {
+            final Element parent = elements.pop();
+            final int current = nodes.pop();
+            int child = firstChildren[current];
+            for (int i = 0; i < childCounts[current]; i++, child = nextSiblings[child]) {
+                final Element e = newElement(child);
+                parent.getChildren().add(e);
+                if (childCounts[child] > 0) {
+                    elements.push(e);
+                    nodes.push(child);
+                }
+            }
+        }
+        return top;
+    }
+
+    /**
+     * Releases unused capacity once the table is complete.
+     */
+    public void trim() {
+        ids = Arrays.copyOf(ids, size);
+        valueStarts = Arrays.copyOf(valueStarts, size);
+        valueLengths = Arrays.copyOf(valueLengths, size);
+        firstChildren = Arrays.copyOf(firstChildren, size);
+        lastChildren = Arrays.copyOf(lastChildren, size);
+        nextSiblings = Arrays.copyOf(nextSiblings, size);
+        childCounts = Arrays.copyOf(childCounts, size);
+        chars = Arrays.copyOf(chars, charCount);
+        numbers = Arrays.copyOf(numbers, numberCount);
+    }
+
+    private Element newElement(int node) {
+        final Element element = new Element(getId(node));
+        if (valueLengths[node] == NUMBER_VALUE) {
+            element.setValueSequence(new NumberValue(numbers[valueStarts[node]]));
+        } else {
+            element.setValue(getValue(node));
+        }
+        return element;
+    }
+
+    private int allocate() {
+        if (size == ids.length) {
+            final int capacity = Math.max(size * 2, 16);
+            ids = Arrays.copyOf(ids, capacity);
+            valueStarts = Arrays.copyOf(valueStarts, capacity);
+            valueLengths = Arrays.copyOf(valueLengths, capacity);
+            firstChildren = Arrays.copyOf(firstChildren, capacity);
+            lastChildren = Arrays.copyOf(lastChildren, capacity);
+            nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+            childCounts = Arrays.copyOf(childCounts, capacity);
+        }
+        final int node = size++;
+        firstChildren[node] = NONE;
+        lastChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        childCounts[node] = 0;
+        return node;
+    }
+
+    private int encodeId(String id) {
+        if (id == null) {
+            return NULL_ID;
+        }
+        final int numeric = parseId(id);
+        return numeric >= 0 ? numeric : nameId(id);
+    }
+
+    private int nameId(String id) {
+        final Integer existing = nameIndex.get(id);
+        if (existing != null) {
+            return existing;
+        }
+        names.add(id);
+        final int encoded = -names.size();
+        nameIndex.put(id, encoded);
+        return encoded;
+    }
+
+    private void appendChars(CharSequence value) {
+        final int length = value.length();
+        ensureChars(length);
+        if (value instanceof String s) {
+            s.getChars(0, length, chars, charCount);
+        } else {
+            for (int i = 0; i < length; i++) {
+                chars[charCount + i] = value.charAt(i);
+            }
+        }
+        charCount += length;
+    }
+
+    private void ensureChars(int extra) {
+        if (charCount + extra > chars.length) {
+            chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + extra));
+        }
+    }
+
+    /**
+     * @return the id as an int when it is the canonical form of a non negative
+     *         int, otherwise -1
+     */
+    private static int parseId(String id) {
+        final int length = id.length();
+        if (length == 0 || length > 10 || (length > 1 && id.charAt(0) == '0')) {
+            return -1;
+        }
+        long value = 0;
+        for (int i = 0; i < length; i++) {
+            final char c = id.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value <= Integer.MAX_VALUE ? (int) value : -1;
+    }
+
+}
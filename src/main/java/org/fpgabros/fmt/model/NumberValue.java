@@ -0,0 +1,61 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.model;
+
+/**
+ * A numeric cell value that is only formatted when first read as text.
+ */
+public final class NumberValue implements CharSequence {
+
+    private final double value;
+
+    // racy cache, safe to publish as Strings are immutable
+    private String text;
+
+    public NumberValue(double value) {
+        this.value = value;
+    }
+
+    public double doubleValue() {
+        return value;
+    }
+
+    @Override
+    public int length() {
+        return toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        String string = text;
+        if (string == null) {
+            string = Double.toString(value);
+            text = string;
+        }
+        return string;
+    }
+
+}
@@ -0,0 +1,118 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Encoded characters in an input buffer. Slices of ASCII, or of ISO-8859-1,
+ * are read straight from the buffer, others are decoded once on first read.
+ * The slice keeps the buffer reachable, a mapped buffer stays mapped for as
+ * long as any slice of it is in use.
+ */
+final class ByteSlice implements CharSequence {
+
+    private static final byte UNKNOWN = 0;
+    private static final byte DIRECT = 1;
+    private static final byte DECODED = 2;
+
+    private final ByteBuffer buffer;
+    private final int offset;
+    private final int length;
+    private final Charset charset;
+
+    // whether chars map one to one to bytes, found on first read
+    private byte mode;
+
+    // racy cache, safe to publish as Strings are immutable
+    private String decoded;
+
+    ByteSlice(ByteBuffer buffer, int offset, int length, Charset charset) {
+        this.buffer = buffer;
+        this.offset = offset;
+        this.length = length;
+        this.charset = charset;
+    }
+
+    @Override
+    public int length() {
+        return isDirect() ? length : toString().length();
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (isDirect()) {
+            if (index < 0 || index >= length) {
+                throw new StringIndexOutOfBoundsException(index);
+            }
+            return (char) (buffer.get(offset + index) & 0xFF);
+        }
+        return toString().charAt(index);
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        if (isDirect()) {
+            if (start < 0 || end > length || start > end) {
+                throw new StringIndexOutOfBoundsException("begin " + start + ", end " + end + ", length " + length);
+            }
+            return new ByteSlice(buffer, offset + start, end - start, charset);
+        }
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return length == 0;
+    }
+
+    @Override
+    public String toString() {
+        String string = decoded;
+        if (string == null) {
+            if (buffer.hasArray()) {
+                string = new String(buffer.array(), buffer.arrayOffset() + offset, length, charset);
+            } else {
+                final byte[] bytes = new byte[length];
+                buffer.get(offset, bytes);
+                string = new String(bytes, charset);
+            }
+            decoded = string;
+        }
+        return string;
+    }
+
+    private boolean isDirect() {
+        byte m = mode;
+        if (m == UNKNOWN) {
+            m = StandardCharsets.ISO_8859_1.equals(charset) || isAscii() ? DIRECT : DECODED;
+            mode = m;
+        }
+        return m == DIRECT;
+    }
+
+    private boolean isAscii() {
+        for (int i = offset; i < offset + length; i++) {
+            if (buffer.get(i) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+/**
+ * Snapshot of the counters of a {@link CachingSpec}.
+ *
+ * @param hits      reads answered from the cache, including reads that waited
+ *                  on a parse already running for the same file
+ * @param misses    reads that parsed the file
+ * @param evictions entries dropped to stay within the size bound, or cleared
+ *                  by the garbage collector
+ * @param entries   entries currently cached
+ * @param bytes     estimated bytes retained by the cached entries
+ */
+public record CacheStats(long hits, long misses, long evictions, int entries, long bytes) {
+
+    public double hitRate() {
+        final long total = hits + misses;
+        return total == 0 ? 0.0 : (double) hits / total;
+    }
+
+}
@@ -0,0 +1,294 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.ref.SoftReference;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.model.ElementSize;
+
+import lombok.AccessLevel;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
+
+/**
+ * Spec that caches the trees read through another spec. Entries are keyed on
+ * the file path and the spec, and are only used while the size and
+ * modification time of the file match, so a changed file is parsed again.
+ * The cache holds at most {@code maxBytes} of estimated tree size, evicting
+ * the least recently used entries first. Concurrent reads of the same file
+ * share a single parse.
+ * <p>
+ * Cached trees are shared between callers and must not be modified.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class CachingSpec extends Spec {
+
+    private final Spec delegate;
+    private final long maxBytes;
+    // hold trees through soft references the collector may clear
+    private final boolean softValues;
+
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final LinkedHashMap<Source, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    @Getter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private final Map<Key, CompletableFuture<Element>> loading = new ConcurrentHashMap<>();
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long bytes;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long hits;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long misses;
+
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    @EqualsAndHashCode.Exclude
+    @ToString.Exclude
+    private long evictions;
+
+    public CachingSpec(Spec delegate, long maxBytes) {
+        this(delegate, maxBytes, false);
+    }
+
+    public CachingSpec(Spec delegate, long maxBytes, boolean softValues) {
+        super();
+        this.delegate = delegate;
+        this.maxBytes = maxBytes;
+        this.softValues = softValues;
+    }
+
+    @Override
+    public Element read(File file) throws ParseException {
+        final Key key;
+        try {
+            final BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+            key = new Key(file.toPath().toAbsolutePath().normalize(), attributes.size(),
+                    attributes.lastModifiedTime().toMillis(), delegate);
+        } catch (IOException ex) {
+            // let the spec report the problem with the file
+            return delegate.read(file);
+        }
+
+        final Element cached = lookup(key);
+        if (cached != null) {
+            return cached;
+        }
+
+        // join a parse of the same file that is already running
+        final CompletableFuture<Element> load = new CompletableFuture<>();
+        final CompletableFuture<Element> running = loading.putIfAbsent(key, load);
+        if (running != null) {
+            synchronized (this) {
+                hits++;
+            }
+            return await(running);
+        }
+
+        try {
+            // the previous parse may have finished since the lookup
+            final Element stored = lookup(key);
+            if (stored != null) {
+                load.complete(stored);
+                return stored;
+            }
+            synchronized (this) {
+                misses++;
+            }
+            final Element element = delegate.read(file);
+            store(key, element);
+            load.complete(element);
+            return element;
+        } catch (ParseException | RuntimeException ex) {
+            load.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            loading.remove(key, load);
+        }
+    }
+
+    @Override
+    protected <T> T parse(File file, ParseListener<T> listener) throws ParseException {
+        return delegate.parse(file, listener);
+    }
+
+    @Override
+    protected <T> T parse(File file, ParseListener<T> listener, ReadOptions options) throws ParseException {
+        // partial reads are not cached
+        return delegate.parse(file, listener, options);
+    }
+
+    @Override
+    protected <T> T parse(File file, PrimitiveParseListener<T> listener, ReadOptions options)
+            throws ParseException {
+        return delegate.parse(file, listener, options);
+    }
+
+    @Override
+    protected <T> T parse(InputStream in, String name, ParseListener<T> listener) throws ParseException {
+        return delegate.parse(in, name, listener);
+    }
+
+    public synchronized CacheStats getStats() {
+        return new CacheStats(hits, misses, evictions, entries.size(), bytes);
+    }
+
+    /**
+     * Drops every cached entry.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        bytes = 0;
+    }
+
+    private synchronized Element lookup(Key key) {
+        final Entry entry = entries.get(key.source());
+        if (entry != null) {
+            if (!entry.key.equals(key)) {
+                // the file has changed
+                remove(entry);
+                return null;
+            }
+            final Element element = entry.get();
+            if (element != null) {
+                hits++;
+                return element;
+            }
+            // cleared by the collector
+            remove(entry);
+            evictions++;
+        }
+        return null;
+    }
+
+    private synchronized void store(Key key, Element element) {
+        final long size = ElementSize.estimate(element);
+        if (size > maxBytes) {
+            return;
+        }
+        final Entry previous = entries.put(key.source(), new Entry(key, element, size, softValues));
+        if (previous != null) {
+            bytes -= previous.size;
+        }
+        bytes += size;
+
+        // drop the entries the collector cleared
+        if (softValues) {
+            final Iterator<Map.Entry<Source, Entry>> it = entries.entrySet().iterator();
+            while (it.hasNext()) {
+                final Entry entry = it.next().getValue();
+                if (entry.get() == null) {
+                    it.remove();
+                    bytes -= entry.size;
+                    evictions++;
+                }
+            }
+        }
+
+        // then evict the least recently used entries
+        final Iterator<Map.Entry<Source, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext() && bytes > maxBytes) {
+            final Entry entry = it.next().getValue();
+            it.remove();
+            bytes -= entry.size;
+            evictions++;
+        }
+    }
+
+    private void remove(Entry entry) {
+        entries.remove(entry.key.source());
+        bytes -= entry.size;
+    }
+
+    private static Element await(CompletableFuture<Element> running) throws ParseException {
+        try {
+            return running.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new ParseException("Interrupted while waiting for a parse.", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof ParseException pex) {
+                throw new ParseException(pex.getMessage(), pex);
+            }
+            throw new ParseException(ex.getCause());
+        }
+    }
+
+    private record Source(Path path, Spec spec) {
+    }
+
+    private record Key(Path path, long size, long modified, Spec spec) {
+
+        Source source() {
+            return new Source(path, spec);
+        }
+
+    }
+
+    private static final class Entry {
+
+        private final Key key;
+        private final Element strong;
+        private final SoftReference<Element> soft;
+        private final long size;
+
+        Entry(Key key, Element element, long size, boolean soft) {
+            this.key = key;
+            this.strong = soft ? null : element;
+            this.soft = soft ? new SoftReference<>(element) : null;
+            this.size = size;
+        }
+
+        Element get() {
+            return strong != null ? strong : soft.get();
+        }
+
+    }
+
+}
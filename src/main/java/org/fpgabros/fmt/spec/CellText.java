@@ -0,0 +1,51 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+import org.apache.poi.util.LocaleUtil;
+
+/**
+ * Text of typed cell values, matching what {@code Cell.toString()} gives for
+ * the same cell.
+ */
+final class CellText {
+
+    static final String TRUE = "TRUE";
+    static final String FALSE = "FALSE";
+
+    private CellText() {
+    }
+
+    static String of(boolean value) {
+        return value ? TRUE : FALSE;
+    }
+
+    static String of(LocalDateTime value) {
+        return dateFormat().format(Date.from(value.atZone(LocaleUtil.getUserTimeZone().toZoneId()).toInstant()));
+    }
+
+    static DateFormat dateFormat() {
+        final DateFormat format = new SimpleDateFormat("dd-MMM-yyyy", LocaleUtil.getUserLocale());
+        format.setTimeZone(LocaleUtil.getUserTimeZone());
+        return format;
+    }
+
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Detects gzip compressed input by its magic number so it can be
+ * decompressed while it is parsed.
+ */
+final class Compression {
+
+    private static final int GZIP_MAGIC_0 = 0x1F;
+    private static final int GZIP_MAGIC_1 = 0x8B;
+    private static final int BUFFER = 64 * 1024;
+
+    private Compression() {
+    }
+
+    static boolean isGzip(File file) throws IOException {
+        try (InputStream in = Files.newInputStream(file.toPath())) {
+            return in.read() == GZIP_MAGIC_0 && in.read() == GZIP_MAGIC_1;
+        }
+    }
+
+    /**
+     * Wraps an input in a decompressing stream when it is gzip compressed.
+     * Closing the returned stream releases the inflater but leaves the input
+     * open.
+     */
+    static InputStream open(InputStream in) throws IOException {
+        final InputStream buffered = new BufferedInputStream(new Unclosed(in), BUFFER);
+        buffered.mark(2);
+        final boolean gzip = buffered.read() == GZIP_MAGIC_0 && buffered.read() == GZIP_MAGIC_1;
+        buffered.reset();
+        return gzip ? new GZIPInputStream(buffered, BUFFER) : buffered;
+    }
+
+    /**
+     * Leaves the stream it wraps open, which is owned by the caller.
+     */
+    private static final class Unclosed extends FilterInputStream {
+
+        Unclosed(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public void close() {
+            // the stream is closed by its owner
+        }
+
+    }
+
+}
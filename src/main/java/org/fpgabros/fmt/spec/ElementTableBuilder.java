@@ -0,0 +1,152 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.util.Arrays;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.ElementTable;
+
+/**
+ * Listener that fills an {@link ElementTable} directly from parse events. It
+ * follows the same rules as {@link ElementBuilder}, so
+ * {@link ElementTable#toElement()} gives the tree a regular read would.
+ */
+public class ElementTableBuilder implements ParseListener<ElementTable> {
+
+    private ElementTable table;
+
+    // open nodes, and the number of children issued to each
+    private int[] stack;
+    private int[] counts;
+    private int depth;
+
+    public ElementTableBuilder() {
+        this.table = new ElementTable();
+        this.stack = new int[8];
+        this.counts = new int[8];
+    }
+
+    @Override
+    public void openFile(String id) throws ParseException {
+        if (depth != 0) {
+            throw new ParseException("Parser has not been reset.");
+        }
+        push(table.addNode(id));
+    }
+
+    @Override
+    public void openRecord(String id) throws ParseException {
+        if (depth == 0) {
+            throw new ParseException("A file must be opened to start a record.");
+        }
+        int idx = nextIndex();
+        push(id == null ? table.addNode(idx) : table.addNode(id));
+    }
+
+    @Override
+    public void openRow(Integer index) throws ParseException {
+        if (depth == 0) {
+            throw new ParseException("A record must be opened to start a row.");
+        }
+        int idx = nextIndex();
+        push(table.addNode(index != null ? index : idx));
+    }
+
+    @Override
+    public void receive(Integer index, String value) throws ParseException {
+        if (depth == 0) {
+            throw new ParseException("A row must be opened to receive a value.");
+        }
+        int idx = nextIndex();
+        int node = table.addNode(index != null ? index : idx, value);
+        table.addChild(stack[depth - 1], node);
+    }
+
+    @Override
+    public void receiveDouble(Integer index, double value) throws ParseException {
+        if (depth == 0) {
+            throw new ParseException("A row must be opened to receive a value.");
+        }
+        int idx = nextIndex();
+        int node = table.addNode(index != null ? index : idx);
+        table.setDouble(node, value);
+        table.addChild(stack[depth - 1], node);
+    }
+
+    @Override
+    public void comment(String value) throws ParseException {
+        if (depth == 0) {
+            throw new ParseException("A file must be opened to process a comment.");
+        }
+        table.appendValue(stack[depth - 1], value);
+    }
+
+    @Override
+    public void closeRow() throws ParseException {
+        if (depth < 2) {
+            throw new ParseException("A row cannot be closed. No row is open.");
+        }
+        int row = stack[--depth];
+        table.addChild(stack[depth - 1], row);
+    }
+
+    @Override
+    public void closeRecord() throws ParseException {
+        if (depth < 2) {
+            throw new ParseException("A record cannot be closed. No record is open.");
+        }
+        int rec = stack[--depth];
+        table.fold(rec);
+        table.addChild(stack[depth - 1], rec);
+    }
+
+    @Override
+    public ElementTable closeFile() throws ParseException {
+        if (depth == 0) {
+            throw new ParseException("A file cannot be closed. No file is open.");
+        }
+        int root = stack[--depth];
+        table.fold(root);
+        table.setRoot(root);
+        table.trim();
+
+        ElementTable result = table;
+        table = new ElementTable();
+        return result;
+    }
+
+    @Override
+    public void reset() throws ParseException {
+        table = new ElementTable();
+        depth = 0;
+    }
+
+    private int nextIndex() {
+        return counts[depth - 1]++;
+    }
+
+    private void push(int node) {
+        if (depth == stack.length) {
+            stack = Arrays.copyOf(stack, depth * 2);
+            counts = Arrays.copyOf(counts, depth * 2);
+        }
+        stack[depth] = node;
+        counts[depth] = 0;
+        depth++;
+    }
+
+}
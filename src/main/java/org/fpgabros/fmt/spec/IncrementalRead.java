@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.fpgabros.fmt.model.Element;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+
+/**
+ * The tree from a read of an {@link IncrementalReader}, with the records that
+ * changed since the read before it. Records are identified by their index,
+ * which is also their id in the tree.
+ */
+@Getter
+public class IncrementalRead {
+
+    /**
+     * Previous index of a record that was parsed by this read.
+     */
+    public static final int PARSED = -1;
+
+    private final Element element;
+
+    /**
+     * Indexes of the records parsed by this read, the ones that were inserted
+     * or edited, in order.
+     */
+    private final List<Integer> changed;
+
+    /**
+     * Indexes of the records of the previous read that are gone, in order.
+     */
+    private final List<Integer> removed;
+
+    @Getter(AccessLevel.NONE)
+    private final int[] previousIndexes;
+
+    IncrementalRead(Element element, int[] previousIndexes, int previousCount) {
+        this.element = element;
+        this.previousIndexes = previousIndexes;
+        final List<Integer> changed = new ArrayList<>();
+        final boolean[] kept = new boolean[previousCount];
+        for (int i = 0; i < previousIndexes.length; i++) {
+            if (previousIndexes[i] == PARSED) {
+                changed.add(i);
+            } else {
+                kept[previousIndexes[i]] = true;
+            }
+        }
+        final List<Integer> removed = new ArrayList<>();
+        for (int i = 0; i < previousCount; i++) {
+            if (!kept[i]) {
+                removed.add(i);
+            }
+        }
+        this.changed = Collections.unmodifiableList(changed);
+        this.removed = Collections.unmodifiableList(removed);
+    }
+
+    public int getRecordCount() {
+        return previousIndexes.length;
+    }
+
+    /**
+     * @return the index the record had in the previous read, or
+     *         {@link #PARSED} when the record was parsed by this read
+     */
+    public int getPreviousIndex(int index) {
+        return previousIndexes[index];
+    }
+
+    /**
+     * @return true when every record is where the previous read had it
+     */
+    public boolean isUnchanged() {
+        if (!removed.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < previousIndexes.length; i++) {
+            if (previousIndexes[i] != i) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+}
@@ -0,0 +1,277 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+import java.util.zip.CRC32C;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Reads a multipart text file again after it has been edited, parsing only
+ * the records that changed. Each read splits the file on blank lines into
+ * blocks and hashes them. Blocks whose content was seen by the previous read
+ * keep the records parsed then, wherever they have moved to, and only new or
+ * edited blocks are parsed. The tree is the same as {@link TextSpec#read}
+ * gives for the file.
+ * <p>
+ * Blocks are matched on their length and a 64 bit hash, made of the CRC32C
+ * and the CRC32 of their bytes. Records are shared between the trees of
+ * successive reads, so trees must not be modified. A reader is not thread
+ * safe.
+ */
+public class IncrementalReader {
+
+    private static final int READ_BUFFER = 64 * 1024;
+
+    private final TextSpec spec;
+    private final Path path;
+
+    // blocks of the previous read, in file order
+    private List<Block> blocks = List.of();
+    private int recordCount;
+
+    public IncrementalReader(TextSpec spec, Path path) {
+        if (!spec.isMultipart()) {
+            throw new IllegalArgumentException("Only multipart files can be read incrementally.");
+        }
+        this.spec = spec;
+        this.path = path.toAbsolutePath();
+        if (!new TextScanner(spec, PrimitiveParseListener.of(new ElementBuilder())).isByteScannable()) {
+            throw new IllegalArgumentException(
+                    "Files can only be read incrementally when they can be scanned as bytes.");
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Reads the file, parsing only the records that changed since the last
+     * read. The first read parses every record.
+     */
+    public IncrementalRead read() throws ParseException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            if (Compression.isGzip(path.toFile())) {
+                throw new ParseException("Compressed files cannot be read incrementally: " + path);
+            }
+            final List<Span> spans = split(channel);
+
+            // previous blocks by content, in file order so repeated content keeps its order
+            final Map<Content, ArrayDeque<Block>> previous = new HashMap<>();
+            for (Block block : blocks) {
+                previous.computeIfAbsent(block.span().content(), k -> new ArrayDeque<>()).add(block);
+            }
+
+            // parse the blocks that were not seen before into one builder
+            final ElementBuilder parsed = new ElementBuilder();
+            parsed.openFile(path.getFileName().toString());
+            parsed.openRecord(null);
+            final List<Element> parsedRecords = parsed.getStack().peek().getChildren();
+            final TextScanner scanner = new TextScanner(spec, PrimitiveParseListener.of(parsed));
+            final Block[] reused = new Block[spans.size()];
+            final int[] parsedFrom = new int[spans.size() + 1];
+            for (int i = 0; i < spans.size(); i++) {
+                final ArrayDeque<Block> matches = previous.get(spans.get(i).content());
+                reused[i] = matches == null ? null : matches.poll();
+                parsedFrom[i] = parsedRecords.size();
+                if (reused[i] == null) {
+                    scanner.scan(channel, spans.get(i).from(), spans.get(i).to());
+                }
+            }
+            parsedFrom[spans.size()] = parsedRecords.size();
+
+            // stitch the records together in file order
+            final ElementBuilder builder = new ElementBuilder();
+            builder.openFile(path.getFileName().toString());
+            builder.openRecord(null);
+            final List<Block> next = new ArrayList<>(spans.size());
+            final List<Integer> previousIndexes = new ArrayList<>();
+            for (int i = 0; i < spans.size(); i++) {
+                final List<Element> source = reused[i] != null ? reused[i].records()
+                        : parsedRecords.subList(parsedFrom[i], parsedFrom[i + 1]);
+                final List<Element> records = new ArrayList<>(source.size());
+                final int first = previousIndexes.size();
+                for (int k = 0; k < source.size(); k++) {
+                    final Element record = withId(source.get(k), first + k);
+                    builder.attach(record);
+                    records.add(record);
+                    previousIndexes.add(reused[i] != null ? reused[i].first() + k : IncrementalRead.PARSED);
+                }
+                next.add(new Block(spans.get(i), first, List.copyOf(records)));
+            }
+            builder.closeRecord();
+            final Element element = builder.closeFile();
+
+            final int[] indexes = previousIndexes.stream().mapToInt(Integer::intValue).toArray();
+            final IncrementalRead read = new IncrementalRead(element, indexes, recordCount);
+            blocks = next;
+            recordCount = indexes.length;
+            return read;
+        } catch (IOException ex) {
+            throw ex instanceof ParseException pex ? pex : new ParseException(ex);
+        }
+    }
+
+    /**
+     * Forgets the previous read, so the next one parses every record.
+     */
+    public void reset() {
+        blocks = List.of();
+        recordCount = 0;
+    }
+
+    /**
+     * @return the record with an id, copied when it had another id so the
+     *         tree it came from keeps its own
+     */
+    private static Element withId(Element record, int index) {
+        final String id = Integer.toString(index);
+        if (id.equals(record.getId())) {
+            return record;
+        }
+        final Element copy = new Element(id, null, record.getIndex(), record.getChildren());
+        copy.setValueSequence(record.getValueSequence());
+        return copy;
+    }
+
+    /**
+     * Splits a file into blocks of non blank lines. Lines are blank the same
+     * way the byte scanner sees them, so a block holds whole records. Lines
+     * the scanner only finds blank once decoded leave more than one record in
+     * a block, which is still parsed as a whole.
+     */
+    static List<Span> split(FileChannel channel) throws IOException {
+        final Splitter splitter = new Splitter();
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER);
+        // file position of the start of the buffer
+        long offset = 0;
+        boolean eof = false;
+        while (!eof) {
+            eof = channel.read(buffer, offset + buffer.position()) < 0;
+            final byte[] bytes = buffer.array();
+            final int limit = buffer.position();
+            int start = 0;
+            for (int i = 0; i < limit; i++) {
+                final byte b = bytes[i];
+                if (b != '\n' && b != '\r') {
+                    continue;
+                }
+                if (b == '\r' && i + 1 == limit && !eof) {
+                    // can't tell yet if this is a \r\n pair
+                    break;
+                }
+                splitter.line(bytes, start, i, offset);
+                start = b == '\r' && i + 1 < limit && bytes[i + 1] == '\n' ? ++i + 1 : i + 1;
+            }
+            if (eof && start < limit) {
+                splitter.line(bytes, start, limit, offset);
+                start = limit;
+            }
+
+            if (start == 0 && !buffer.hasRemaining()) {
+                // a single line larger than the buffer
+                buffer = ByteBuffer.allocate(buffer.capacity() * 2).put(buffer.flip());
+            } else {
+                // keep the partial line for the next read
+                System.arraycopy(bytes, start, bytes, 0, limit - start);
+                buffer.position(limit - start);
+                offset += start;
+            }
+        }
+        return splitter.finish();
+    }
+
+    /**
+     * Bytes {@code [from, to)} of a file, from the start of the first line of
+     * a block to the end of its last line.
+     */
+    record Span(long from, long to, long hash) {
+
+        Content content() {
+            return new Content(to - from, hash);
+        }
+
+    }
+
+    private record Content(long length, long hash) {
+    }
+
+    /**
+     * @param first index of the first record of the block
+     */
+    private record Block(Span span, int first, List<Element> records) {
+    }
+
+    private static final class Splitter {
+
+        private final List<Span> spans = new ArrayList<>();
+        private final CRC32C crc32c = new CRC32C();
+        private final CRC32 crc32 = new CRC32();
+        // start of the open block, -1 when between blocks
+        private long from = -1;
+        private long to;
+
+        void line(byte[] bytes, int start, int end, long offset) {
+            int first = start;
+            while (first < end && TextScanner.isWhitespace(bytes[first])) {
+                first++;
+            }
+            if (first == end) {
+                close();
+                return;
+            }
+            if (from < 0) {
+                from = offset + start;
+                crc32c.reset();
+                crc32.reset();
+            } else {
+                // line breaks are hashed as one, the parse is the same for all of them
+                crc32c.update('\n');
+                crc32.update('\n');
+            }
+            crc32c.update(bytes, start, end - start);
+            crc32.update(bytes, start, end - start);
+            to = offset + end;
+        }
+
+        List<Span> finish() {
+            close();
+            return spans;
+        }
+
+        private void close() {
+            if (from >= 0) {
+                spans.add(new Span(from, to, crc32c.getValue() << 32 | crc32.getValue()));
+                from = -1;
+            }
+        }
+
+    }
+
+}
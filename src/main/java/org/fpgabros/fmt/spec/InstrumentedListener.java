@@ -0,0 +1,127 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.time.LocalDateTime;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.metrics.ParseMetrics;
+
+/**
+ * Listener decorator that counts the events passed to the delegate and times
+ * the phases of the parse. The totals are handed to the metrics once the file
+ * is closed, so the cost per event is a field increment.
+ *
+ * @see InstrumentedPrimitiveListener
+ */
+public class InstrumentedListener<T> implements ParseListener<T> {
+
+    private final ParseListener<T> delegate;
+    private final ParseCounter counter;
+
+    public InstrumentedListener(ParseListener<T> delegate, ParseMetrics metrics, String spec) {
+        this.delegate = delegate;
+        this.counter = new ParseCounter(metrics, spec);
+    }
+
+    /**
+     * Sets the size of the input reported with the stats.
+     */
+    public void setBytes(long bytes) {
+        counter.setBytes(bytes);
+    }
+
+    @Override
+    public void openFile(String id) throws ParseException {
+        counter.openFile();
+        delegate.openFile(id);
+    }
+
+    @Override
+    public void openRecord(String id) throws ParseException {
+        delegate.openRecord(id);
+        counter.openRecord();
+    }
+
+    @Override
+    public void openRow(Integer index) throws ParseException {
+        counter.openRow();
+        delegate.openRow(index);
+    }
+
+    @Override
+    public void receive(Integer index, String value) throws ParseException {
+        delegate.receive(index, value);
+        counter.cell();
+    }
+
+    @Override
+    public void receive(Integer index, CharSequence value) throws ParseException {
+        delegate.receive(index, value);
+        counter.cell();
+    }
+
+    @Override
+    public void receiveDouble(Integer index, double value) throws ParseException {
+        delegate.receiveDouble(index, value);
+        counter.cell();
+    }
+
+    @Override
+    public void receiveBoolean(Integer index, boolean value) throws ParseException {
+        delegate.receiveBoolean(index, value);
+        counter.cell();
+    }
+
+    @Override
+    public void receiveDate(Integer index, LocalDateTime value) throws ParseException {
+        delegate.receiveDate(index, value);
+        counter.cell();
+    }
+
+    @Override
+    public void comment(String value) throws ParseException {
+        delegate.comment(value);
+        counter.comment();
+    }
+
+    @Override
+    public void closeRow() throws ParseException {
+        delegate.closeRow();
+        counter.closeRow();
+    }
+
+    @Override
+    public void closeRecord() throws ParseException {
+        final long start = System.nanoTime();
+        delegate.closeRecord();
+        counter.closeRecord(start);
+    }
+
+    @Override
+    public T closeFile() throws ParseException {
+        final T result = delegate.closeFile();
+        counter.closeFile();
+        return result;
+    }
+
+    @Override
+    public void reset() throws ParseException {
+        counter.clear();
+        delegate.reset();
+    }
+
+}
@@ -0,0 +1,104 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.File;
+import java.io.InputStream;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.metrics.ParseMetrics;
+
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+
+/**
+ * Spec that reads through another spec and records telemetry for every file,
+ * including failures by exception type.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+public class InstrumentedSpec extends Spec {
+
+    private final Spec delegate;
+    private final ParseMetrics metrics;
+
+    /**
+     * Instruments a spec with {@link ParseMetrics#create()}.
+     */
+    public InstrumentedSpec(Spec delegate) {
+        this(delegate, ParseMetrics.create());
+    }
+
+    public InstrumentedSpec(Spec delegate, ParseMetrics metrics) {
+        super();
+        this.delegate = delegate;
+        this.metrics = metrics;
+    }
+
+    @Override
+    protected <T> T parse(File file, ParseListener<T> listener) throws ParseException {
+        return parse(file, listener, ReadOptions.ALL);
+    }
+
+    @Override
+    protected <T> T parse(File file, ParseListener<T> listener, ReadOptions options) throws ParseException {
+        final InstrumentedListener<T> instrumented = new InstrumentedListener<>(listener, metrics, name());
+        instrumented.setBytes(file.length());
+        return instrument(() -> delegate.parse(file, instrumented, options));
+    }
+
+    /**
+     * Primitive listeners are passed on as such, so the delegate issues its
+     * native events.
+     */
+    @Override
+    protected <T> T parse(File file, PrimitiveParseListener<T> listener, ReadOptions options)
+            throws ParseException {
+        final InstrumentedPrimitiveListener<T> instrumented = new InstrumentedPrimitiveListener<>(listener, metrics,
+                name());
+        instrumented.setBytes(file.length());
+        return instrument(() -> delegate.parse(file, instrumented, options));
+    }
+
+    /**
+     * Streams are reported without a size, as it is not known up front.
+     */
+    @Override
+    protected <T> T parse(InputStream in, String name, ParseListener<T> listener) throws ParseException {
+        final InstrumentedListener<T> instrumented = new InstrumentedListener<>(listener, metrics, name());
+        return instrument(() -> delegate.parse(in, name, instrumented));
+    }
+
+    private String name() {
+        return delegate.getClass().getSimpleName();
+    }
+
+    private <T> T instrument(Parse<T> parse) throws ParseException {
+        final long start = System.nanoTime();
+        try {
+            return parse.run();
+        } catch (ParseException | RuntimeException ex) {
+            metrics.failed(name(), ex, System.nanoTime() - start);
+            throw ex;
+        }
+    }
+
+    @FunctionalInterface
+    private interface Parse<T> {
+        T run() throws ParseException;
+    }
+
+}
@@ -0,0 +1,288 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.RichTextString;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Shared strings table kept in memory mapped temporary files rather than on
+ * the heap, for workbooks whose table is too large to load. The strings are
+ * written out as UTF-8 while the part is parsed, with a second file holding
+ * the offset of each string, and only a small cache of recently used strings
+ * is kept decoded. Phonetic runs are left out, as they are by the workbook
+ * model.
+ */
+final class MappedSharedStrings implements SharedStrings, Closeable {
+
+    private static final String NS_SPREADSHEETML = "http://schemas.openxmlformats.org/spreadsheetml/2006/main";
+
+    // strings never straddle a segment, longer ones than this can't be stored
+    private static final int SEGMENT_SHIFT = 30;
+    private static final long SEGMENT = 1L << SEGMENT_SHIFT;
+    private static final int OFFSET_SHIFT = SEGMENT_SHIFT - 3;
+
+    private static final int DEFAULT_CACHE = 4096;
+
+    private final Path dir;
+    private final List<ByteBuffer> data = new ArrayList<>();
+    private final List<LongBuffer> offsets = new ArrayList<>();
+    private final Map<Integer, String> cache;
+
+    private int count;
+    private int uniqueCount;
+    private int size;
+
+    MappedSharedStrings(PackagePart part) throws IOException, SAXException {
+        this(part, DEFAULT_CACHE);
+    }
+
+    MappedSharedStrings(PackagePart part, int cacheSize) throws IOException, SAXException {
+        this.cache = new LinkedHashMap<>(cacheSize, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, String> eldest) {
+                return size() > cacheSize;
+            }
+
+        };
+        this.dir = Files.createTempDirectory("fmt-strings");
+        try {
+            final Path stringFile = dir.resolve("strings");
+            final Path offsetFile = dir.resolve("offsets");
+            try (InputStream in = part.getInputStream();
+                    Writer writer = new Writer(stringFile, offsetFile)) {
+                final XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(writer);
+                parser.parse(new InputSource(in));
+            } catch (ParserConfigurationException ex) {
+                throw new SAXException("SAX parser appears to be broken - " + ex.getMessage());
+            }
+            map(stringFile, offsetFile);
+            // the mappings outlive the files where the platform lets them go
+            delete();
+        } catch (IOException | SAXException | RuntimeException ex) {
+            close();
+            throw ex;
+        }
+    }
+
+    @Override
+    public RichTextString getItemAt(int idx) {
+        if (idx < 0 || idx >= size) {
+            throw new IllegalStateException("Cannot get item at " + idx + " of " + size + " strings.");
+        }
+        synchronized (cache) {
+            String value = cache.get(idx);
+            if (value == null) {
+                value = decode(idx);
+                cache.put(idx, value);
+            }
+            return new XSSFRichTextString(value);
+        }
+    }
+
+    @Override
+    public int getCount() {
+        return count;
+    }
+
+    @Override
+    public int getUniqueCount() {
+        return uniqueCount;
+    }
+
+    /**
+     * Deletes the files, if they were not already deleted once mapped. Files
+     * that can't be deleted while mapped, as on Windows, are deleted on exit.
+     * The mappings are released once they are collected.
+     */
+    @Override
+    public void close() {
+        if (!delete()) {
+            dir.toFile().deleteOnExit();
+            dir.resolve("strings").toFile().deleteOnExit();
+            dir.resolve("offsets").toFile().deleteOnExit();
+        }
+    }
+
+    /**
+     * @return whether the files and their directory are gone
+     */
+    private boolean delete() {
+        boolean deleted = true;
+        for (Path path : List.of(dir.resolve("strings"), dir.resolve("offsets"), dir)) {
+            try {
+                Files.deleteIfExists(path);
+            } catch (IOException ex) {
+                deleted = false;
+            }
+        }
+        return deleted;
+    }
+
+    private String decode(int idx) {
+        final long offset = offsets.get(idx >>> OFFSET_SHIFT).get(idx & ((1 << OFFSET_SHIFT) - 1));
+        final ByteBuffer segment = data.get((int) (offset >>> SEGMENT_SHIFT));
+        final int position = (int) (offset & (SEGMENT - 1));
+        final int length = segment.getInt(position);
+        final byte[] bytes = new byte[length];
+        segment.get(position + Integer.BYTES, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void map(Path stringFile, Path offsetFile) throws IOException {
+        try (FileChannel channel = FileChannel.open(stringFile, StandardOpenOption.READ)) {
+            final long length = channel.size();
+            for (long position = 0; position < length; position += SEGMENT) {
+                data.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT, length - position)));
+            }
+        }
+        try (FileChannel channel = FileChannel.open(offsetFile, StandardOpenOption.READ)) {
+            final long length = channel.size();
+            for (long position = 0; position < length; position += SEGMENT) {
+                offsets.add(channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT, length - position))
+                        .asLongBuffer());
+            }
+        }
+    }
+
+    /**
+     * Writes the strings of the part out as they are parsed.
+     */
+    private final class Writer extends DefaultHandler implements Closeable {
+
+        private final DataOutputStream strings;
+        private final DataOutputStream offsetOut;
+        private long position;
+
+        private final StringBuilder characters = new StringBuilder(64);
+        private boolean tIsOpen;
+        private boolean inRPh;
+
+        Writer(Path stringFile, Path offsetFile) throws IOException {
+            this.strings = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(stringFile), 1 << 16));
+            this.offsetOut = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(offsetFile), 1 << 16));
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String name, Attributes attributes) {
+            if (uri != null && !uri.equals(NS_SPREADSHEETML)) {
+                return;
+            }
+            switch (localName) {
+                case "sst" -> {
+                    final String total = attributes.getValue("count");
+                    if (total != null) {
+                        count = (int) Long.parseLong(total);
+                    }
+                    final String unique = attributes.getValue("uniqueCount");
+                    if (unique != null) {
+                        uniqueCount = (int) Long.parseLong(unique);
+                    }
+                }
+                case "si" -> characters.setLength(0);
+                case "t" -> tIsOpen = true;
+                case "rPh" -> inRPh = true;
+                default -> {
+                    // nothing to track
+                }
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String name) throws SAXException {
+            if (uri != null && !uri.equals(NS_SPREADSHEETML)) {
+                return;
+            }
+            switch (localName) {
+                case "si" -> write(characters.toString());
+                case "t" -> tIsOpen = false;
+                case "rPh" -> inRPh = false;
+                default -> {
+                    // nothing to track
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (tIsOpen && !inRPh) {
+                characters.append(ch, start, length);
+            }
+        }
+
+        private void write(String value) throws SAXException {
+            final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            final long length = Integer.BYTES + bytes.length;
+            try {
+                final long room = SEGMENT - (position & (SEGMENT - 1));
+                if (length > room) {
+                    // move to the next segment
+                    strings.write(new byte[(int) room]);
+                    position += room;
+                }
+                offsetOut.writeLong(position);
+                strings.writeInt(bytes.length);
+                strings.write(bytes);
+                position += length;
+                size++;
+            } catch (IOException ex) {
+                throw new SAXException(ex);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                strings.close();
+            } finally {
+                offsetOut.close();
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import org.fpgabros.fmt.metrics.ParseMetrics;
+import org.fpgabros.fmt.metrics.ParseStats;
+
+/**
+ * The counts and timings of the instrumented listeners, handed to the metrics
+ * once the file is closed.
+ */
+final class ParseCounter {
+
+    private final ParseMetrics metrics;
+    private final String spec;
+
+    private long bytes = -1;
+
+    private long records;
+    private long rows;
+    private long cells;
+    private long comments;
+    private long openedAt;
+    private long firstRowNanos;
+    private long foldNanos;
+    private int depth;
+    private int peakDepth;
+
+    ParseCounter(ParseMetrics metrics, String spec) {
+        this.metrics = metrics;
+        this.spec = spec;
+        clear();
+    }
+
+    void setBytes(long bytes) {
+        this.bytes = bytes;
+    }
+
+    void openFile() {
+        clear();
+        openedAt = System.nanoTime();
+        enter();
+    }
+
+    void openRecord() {
+        records++;
+        enter();
+    }
+
+    void openRow() {
+        if (firstRowNanos < 0) {
+            firstRowNanos = System.nanoTime() - openedAt;
+        }
+        rows++;
+        enter();
+    }
+
+    void cell() {
+        cells++;
+    }
+
+    void comment() {
+        comments++;
+    }
+
+    void closeRow() {
+        depth--;
+    }
+
+    void closeRecord(long start) {
+        foldNanos += System.nanoTime() - start;
+        depth--;
+    }
+
+    void closeFile() {
+        depth--;
+        metrics.parsed(new ParseStats(spec, records, rows, cells, comments, bytes, firstRowNanos,
+                System.nanoTime() - openedAt, foldNanos, peakDepth));
+    }
+
+    void clear() {
+        records = 0;
+        rows = 0;
+        cells = 0;
+        comments = 0;
+        firstRowNanos = -1;
+        foldNanos = 0;
+        depth = 0;
+        peakDepth = 0;
+    }
+
+    private void enter() {
+        depth++;
+        peakDepth = Math.max(peakDepth, depth);
+    }
+
+}
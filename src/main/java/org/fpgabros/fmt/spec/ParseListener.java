@@ -15,10 +15,11 @@
  */
 package org.fpgabros.fmt.spec;
 
+import java.time.LocalDateTime;
+
 import org.fpgabros.fmt.exception.ParseException;
-import org.fpgabros.fmt.model.Element;
 
-public interface ParseListener {
+public interface ParseListener<T> {
 
     void openFile(String id) throws ParseException;
 
@@ -28,13 +29,43 @@ public interface ParseListener {
 
     void receive(Integer index, String value) throws ParseException;
 
+    /**
+     * Receives a value that may be a view into the input rather than a String.
+     * Listeners that don't keep such views get the value as a String.
+     */
+    default void receive(Integer index, CharSequence value) throws ParseException {
+        receive(index, value == null ? null : value.toString());
+    }
+
+    /**
+     * Receives a numeric value. Listeners that don't store numbers get it as
+     * the String a spreadsheet cell would give.
+     */
+    default void receiveDouble(Integer index, double value) throws ParseException {
+        receive(index, Double.toString(value));
+    }
+
+    /**
+     * Receives a boolean value, by default as {@code TRUE} or {@code FALSE}.
+     */
+    default void receiveBoolean(Integer index, boolean value) throws ParseException {
+        receive(index, CellText.of(value));
+    }
+
+    /**
+     * Receives a date value, by default formatted as {@code dd-MMM-yyyy}.
+     */
+    default void receiveDate(Integer index, LocalDateTime value) throws ParseException {
+        receive(index, CellText.of(value));
+    }
+
     void comment(String value) throws ParseException;
 
     void closeRow() throws ParseException;
 
     void closeRecord() throws ParseException;
 
-    Element closeFile() throws ParseException;
+    T closeFile() throws ParseException;
 
     void reset() throws ParseException;
 
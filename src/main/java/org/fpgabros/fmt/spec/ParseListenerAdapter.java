@@ -0,0 +1,102 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.time.LocalDateTime;
+
+import org.fpgabros.fmt.exception.ParseException;
+
+/**
+ * Drives a {@link ParseListener} from the events of a
+ * {@link PrimitiveParseListener}.
+ */
+final class ParseListenerAdapter<T> implements PrimitiveParseListener<T> {
+
+    private final ParseListener<T> delegate;
+
+    ParseListenerAdapter(ParseListener<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public void openFile(String id) throws ParseException {
+        delegate.openFile(id);
+    }
+
+    @Override
+    public void openRecord(String id) throws ParseException {
+        delegate.openRecord(id);
+    }
+
+    @Override
+    public void openRow(int index) throws ParseException {
+        delegate.openRow(box(index));
+    }
+
+    @Override
+    public void receive(int index, CharSequence value) throws ParseException {
+        if (value instanceof String s) {
+            delegate.receive(box(index), s);
+        } else {
+            delegate.receive(box(index), value);
+        }
+    }
+
+    @Override
+    public void receiveDouble(int index, double value) throws ParseException {
+        delegate.receiveDouble(box(index), value);
+    }
+
+    @Override
+    public void receiveBoolean(int index, boolean value) throws ParseException {
+        delegate.receiveBoolean(box(index), value);
+    }
+
+    @Override
+    public void receiveDate(int index, LocalDateTime value) throws ParseException {
+        delegate.receiveDate(box(index), value);
+    }
+
+    @Override
+    public void comment(String value) throws ParseException {
+        delegate.comment(value);
+    }
+
+    @Override
+    public void closeRow() throws ParseException {
+        delegate.closeRow();
+    }
+
+    @Override
+    public void closeRecord() throws ParseException {
+        delegate.closeRecord();
+    }
+
+    @Override
+    public T closeFile() throws ParseException {
+        return delegate.closeFile();
+    }
+
+    @Override
+    public void reset() throws ParseException {
+        delegate.reset();
+    }
+
+    private static Integer box(int index) {
+        return index == NO_INDEX ? null : Integer.valueOf(index);
+    }
+
+}
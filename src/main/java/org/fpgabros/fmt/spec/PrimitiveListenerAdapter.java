@@ -0,0 +1,107 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.time.LocalDateTime;
+
+import org.fpgabros.fmt.exception.ParseException;
+
+/**
+ * Drives a {@link PrimitiveParseListener} from the events of a
+ * {@link ParseListener}, for specs that only issue the latter.
+ */
+final class PrimitiveListenerAdapter<T> implements ParseListener<T> {
+
+    private final PrimitiveParseListener<T> delegate;
+
+    PrimitiveListenerAdapter(PrimitiveParseListener<T> delegate) {
+        this.delegate = delegate;
+    }
+
+    PrimitiveParseListener<T> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void openFile(String id) throws ParseException {
+        delegate.openFile(id);
+    }
+
+    @Override
+    public void openRecord(String id) throws ParseException {
+        delegate.openRecord(id);
+    }
+
+    @Override
+    public void openRow(Integer index) throws ParseException {
+        delegate.openRow(unbox(index));
+    }
+
+    @Override
+    public void receive(Integer index, String value) throws ParseException {
+        delegate.receive(unbox(index), value);
+    }
+
+    @Override
+    public void receive(Integer index, CharSequence value) throws ParseException {
+        delegate.receive(unbox(index), value);
+    }
+
+    @Override
+    public void receiveDouble(Integer index, double value) throws ParseException {
+        delegate.receiveDouble(unbox(index), value);
+    }
+
+    @Override
+    public void receiveBoolean(Integer index, boolean value) throws ParseException {
+        delegate.receiveBoolean(unbox(index), value);
+    }
+
+    @Override
+    public void receiveDate(Integer index, LocalDateTime value) throws ParseException {
+        delegate.receiveDate(unbox(index), value);
+    }
+
+    @Override
+    public void comment(String value) throws ParseException {
+        delegate.comment(value);
+    }
+
+    @Override
+    public void closeRow() throws ParseException {
+        delegate.closeRow();
+    }
+
+    @Override
+    public void closeRecord() throws ParseException {
+        delegate.closeRecord();
+    }
+
+    @Override
+    public T closeFile() throws ParseException {
+        return delegate.closeFile();
+    }
+
+    @Override
+    public void reset() throws ParseException {
+        delegate.reset();
+    }
+
+    private static int unbox(Integer index) {
+        return index == null ? PrimitiveParseListener.NO_INDEX : index;
+    }
+
+}
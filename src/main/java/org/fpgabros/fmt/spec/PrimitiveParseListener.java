@@ -0,0 +1,100 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.time.LocalDateTime;
+
+import org.fpgabros.fmt.exception.ParseException;
+
+/**
+ * The events of a {@link ParseListener} with primitive indexes, so that
+ * parsers don't box an index per row and cell, and with values that can be
+ * read in place rather than as a String per cell. The specs drive this
+ * interface; a {@link ParseListener} is driven through
+ * {@link #of(ParseListener)}.
+ */
+public interface PrimitiveParseListener<T> {
+
+    /**
+     * Index of a row or value that the listener numbers itself, where a
+     * {@link ParseListener} is given {@code null}.
+     */
+    int NO_INDEX = -1;
+
+    void openFile(String id) throws ParseException;
+
+    void openRecord(String id) throws ParseException;
+
+    void openRow(int index) throws ParseException;
+
+    /**
+     * Receives a value, which may be a view into the input rather than a
+     * String. The value stays valid after the call.
+     */
+    void receive(int index, CharSequence value) throws ParseException;
+
+    /**
+     * Receives a value held in {@code chars[offset, offset + length)}. The
+     * array is reused by the parser, so the value has to be copied to be kept.
+     */
+    default void receive(int index, char[] chars, int offset, int length) throws ParseException {
+        receive(index, new String(chars, offset, length));
+    }
+
+    /**
+     * @see ParseListener#receiveDouble(Integer, double)
+     */
+    default void receiveDouble(int index, double value) throws ParseException {
+        receive(index, Double.toString(value));
+    }
+
+    /**
+     * @see ParseListener#receiveBoolean(Integer, boolean)
+     */
+    default void receiveBoolean(int index, boolean value) throws ParseException {
+        receive(index, CellText.of(value));
+    }
+
+    /**
+     * @see ParseListener#receiveDate(Integer, LocalDateTime)
+     */
+    default void receiveDate(int index, LocalDateTime value) throws ParseException {
+        receive(index, CellText.of(value));
+    }
+
+    void comment(String value) throws ParseException;
+
+    void closeRow() throws ParseException;
+
+    void closeRecord() throws ParseException;
+
+    T closeFile() throws ParseException;
+
+    void reset() throws ParseException;
+
+    /**
+     * @return a listener that passes the events on to a {@link ParseListener},
+     *         boxing the indexes and giving {@code null} for
+     *         {@link #NO_INDEX}
+     */
+    static <T> PrimitiveParseListener<T> of(ParseListener<T> listener) {
+        if (listener instanceof PrimitiveListenerAdapter<T> adapter) {
+            return adapter.getDelegate();
+        }
+        return new ParseListenerAdapter<>(listener);
+    }
+
+}
@@ -0,0 +1,340 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Listener decorator that applies {@link ReadOptions} to the events passed to
+ * the delegate. Parsers that know about it skip unselected columns before
+ * decoding them and stop once {@link #isDone()}; any records still open then
+ * are closed with the file.
+ * <p>
+ * With a record filter the events of each innermost record are held back
+ * until the record closes, then issued or dropped as a whole.
+ */
+class ProjectingListener<T> implements PrimitiveParseListener<T> {
+
+    private final PrimitiveParseListener<T> delegate;
+    private final ReadOptions options;
+    // selected columns by index, null when all are selected
+    private final boolean[] columns;
+
+    private long rows;
+    private long records;
+    private boolean done;
+
+    // records open on the delegate
+    private int open;
+    // records opened, and whether each has had a record opened in it
+    private int depth;
+    private boolean[] nested = new boolean[8];
+    // position of the next cell in the open row
+    private int nextColumn;
+    // events of the innermost record while it is being filtered
+    private List<Event> held;
+
+    ProjectingListener(PrimitiveParseListener<T> delegate, ReadOptions options) {
+        this.delegate = delegate;
+        this.options = options;
+        this.columns = selection(options.getColumns());
+    }
+
+    /**
+     * @return true once a limit is reached, after which events are ignored
+     */
+    boolean isDone() {
+        return done;
+    }
+
+    PrimitiveParseListener<T> getDelegate() {
+        return delegate;
+    }
+
+    ReadOptions getOptions() {
+        return options;
+    }
+
+    boolean selectsColumn(int column) {
+        return columns == null || (column < columns.length && columns[column]);
+    }
+
+    /**
+     * @return the index after the last selected column
+     */
+    int columnLimit() {
+        return columns == null ? Integer.MAX_VALUE : columns.length;
+    }
+
+    @Override
+    public void openFile(String id) throws ParseException {
+        delegate.openFile(id);
+    }
+
+    @Override
+    public void openRecord(String id) throws ParseException {
+        if (done) {
+            return;
+        }
+        if (depth > 0) {
+            nested[depth - 1] = true;
+        }
+        if (depth >= nested.length) {
+            nested = Arrays.copyOf(nested, nested.length * 2);
+        }
+        nested[depth++] = false;
+
+        if (options.getRecordFilter() != null) {
+            // the held record contains this one, so it is not filtered
+            release();
+            held = new ArrayList<>();
+            held.add(l -> l.openRecord(id));
+        } else {
+            delegate.openRecord(id);
+            open++;
+        }
+    }
+
+    @Override
+    public void openRow(int index) throws ParseException {
+        if (done) {
+            return;
+        }
+        nextColumn = 0;
+        if (held != null) {
+            held.add(l -> l.openRow(index));
+        } else {
+            delegate.openRow(index);
+        }
+    }
+
+    @Override
+    public void receive(int index, CharSequence value) throws ParseException {
+        final int column = column(index);
+        if (!done && selectsColumn(column)) {
+            final int id = projected(index, column);
+            if (held != null) {
+                held.add(l -> l.receive(id, value));
+            } else {
+                delegate.receive(id, value);
+            }
+        }
+    }
+
+    @Override
+    public void receive(int index, char[] chars, int offset, int length) throws ParseException {
+        final int column = column(index);
+        if (!done && selectsColumn(column)) {
+            final int id = projected(index, column);
+            if (held != null) {
+                // the array is reused, so held values are copied
+                final String value = new String(chars, offset, length);
+                held.add(l -> l.receive(id, value));
+            } else {
+                delegate.receive(id, chars, offset, length);
+            }
+        }
+    }
+
+    @Override
+    public void receiveDouble(int index, double value) throws ParseException {
+        final int column = column(index);
+        if (!done && selectsColumn(column)) {
+            final int id = projected(index, column);
+            if (held != null) {
+                held.add(l -> l.receiveDouble(id, value));
+            } else {
+                delegate.receiveDouble(id, value);
+            }
+        }
+    }
+
+    @Override
+    public void receiveBoolean(int index, boolean value) throws ParseException {
+        final int column = column(index);
+        if (!done && selectsColumn(column)) {
+            final int id = projected(index, column);
+            if (held != null) {
+                held.add(l -> l.receiveBoolean(id, value));
+            } else {
+                delegate.receiveBoolean(id, value);
+            }
+        }
+    }
+
+    @Override
+    public void receiveDate(int index, LocalDateTime value) throws ParseException {
+        final int column = column(index);
+        if (!done && selectsColumn(column)) {
+            final int id = projected(index, column);
+            if (held != null) {
+                held.add(l -> l.receiveDate(id, value));
+            } else {
+                delegate.receiveDate(id, value);
+            }
+        }
+    }
+
+    @Override
+    public void comment(String value) throws ParseException {
+        if (done) {
+            return;
+        }
+        if (held != null) {
+            held.add(l -> l.comment(value));
+        } else {
+            delegate.comment(value);
+        }
+    }
+
+    @Override
+    public void closeRow() throws ParseException {
+        if (done) {
+            return;
+        }
+        if (held != null) {
+            held.add(PrimitiveParseListener::closeRow);
+        } else {
+            delegate.closeRow();
+        }
+        if (++rows >= options.getMaxRows()) {
+            done = true;
+        }
+    }
+
+    @Override
+    public void closeRecord() throws ParseException {
+        if (done) {
+            return;
+        }
+        final boolean innermost = !nested[--depth];
+        if (held != null) {
+            closeHeld();
+        } else {
+            delegate.closeRecord();
+            open--;
+            if (innermost) {
+                counted();
+            }
+        }
+    }
+
+    @Override
+    public T closeFile() throws ParseException {
+        if (held != null) {
+            // a record cut short by the row limit
+            closeHeld();
+        }
+        for (; open > 0; open--) {
+            delegate.closeRecord();
+        }
+        return delegate.closeFile();
+    }
+
+    @Override
+    public void reset() throws ParseException {
+        held = null;
+        delegate.reset();
+    }
+
+    private void closeHeld() throws ParseException {
+        final List<Event> events = held;
+        held = null;
+        if (accepts(events)) {
+            for (Event event : events) {
+                event.issue(delegate);
+            }
+            delegate.closeRecord();
+            counted();
+        }
+    }
+
+    private void counted() {
+        if (++records >= options.getMaxRecords()) {
+            done = true;
+        }
+    }
+
+    /**
+     * Builds a held record to test it against the record filter.
+     */
+    private boolean accepts(List<Event> events) throws ParseException {
+        final ElementBuilder builder = new ElementBuilder();
+        builder.openFile(null);
+        final PrimitiveParseListener<Element> target = PrimitiveParseListener.of(builder);
+        for (Event event : events) {
+            event.issue(target);
+        }
+        builder.closeRecord();
+        final Element record = builder.getStack().peek().getChildren().get(0);
+        return options.getRecordFilter().test(record);
+    }
+
+    /**
+     * Issues the held events of a record that turned out to contain other
+     * records.
+     */
+    private void release() throws ParseException {
+        if (held != null) {
+            for (Event event : held) {
+                event.issue(delegate);
+            }
+            held = null;
+            open++;
+        }
+    }
+
+    private int column(int index) {
+        final int column = index != NO_INDEX ? index : nextColumn;
+        nextColumn = column + 1;
+        return column;
+    }
+
+    /**
+     * @return the index to issue a cell with, which is its column once
+     *         columns are left out
+     */
+    private int projected(int index, int column) {
+        return columns == null ? index : column;
+    }
+
+    private static boolean[] selection(Set<Integer> selected) {
+        if (selected == null) {
+            return null;
+        }
+        final int limit = selected.stream().mapToInt(Integer::intValue).max().orElse(-1) + 1;
+        final boolean[] columns = new boolean[Math.max(limit, 0)];
+        for (int column : selected) {
+            if (column >= 0) {
+                columns[column] = true;
+            }
+        }
+        return columns;
+    }
+
+    @FunctionalInterface
+    private interface Event {
+        void issue(PrimitiveParseListener<?> listener) throws ParseException;
+    }
+
+}
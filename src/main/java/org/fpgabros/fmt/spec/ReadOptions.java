@@ -0,0 +1,94 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+
+import org.fpgabros.fmt.model.Element;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * Narrows what a read produces. Specs apply the options while parsing where
+ * they can, skipping the fields of unselected columns, leaving out unselected
+ * sheets and stopping once a limit is reached.
+ * <p>
+ * Records are the innermost records of a file, the same records
+ * {@link Spec#stream(java.io.File)} issues. Records that are left out don't
+ * take up an index, and rows are counted once they are issued.
+ */
+@Data
+@Builder(toBuilder = true)
+public class ReadOptions {
+
+    /**
+     * Reads everything.
+     */
+    public static final ReadOptions ALL = ReadOptions.builder().build();
+
+    // names of the sheets to read, all sheets when null
+    private final Predicate<String> sheetFilter;
+    // indexes of the columns to keep, all columns when null
+    private final Set<Integer> columns;
+    @Builder.Default
+    private final long maxRows = Long.MAX_VALUE;
+    @Builder.Default
+    private final long maxRecords = Long.MAX_VALUE;
+    // records to keep, tested once a record is complete
+    private final Predicate<Element> recordFilter;
+
+    /**
+     * @return true when the options leave the read unchanged
+     */
+    public boolean isAll() {
+        return sheetFilter == null && columns == null && maxRows == Long.MAX_VALUE && maxRecords == Long.MAX_VALUE
+                && recordFilter == null;
+    }
+
+    public boolean selectsSheet(String name) {
+        return sheetFilter == null || sheetFilter.test(name);
+    }
+
+    public static class ReadOptionsBuilder {
+
+        /**
+         * Reads only the sheets with the given names.
+         */
+        public ReadOptionsBuilder sheets(String... names) {
+            final Set<String> selected = new HashSet<>(Arrays.asList(names));
+            return sheetFilter(selected::contains);
+        }
+
+        /**
+         * Keeps only the columns with the given indexes.
+         */
+        public ReadOptionsBuilder columns(int... indexes) {
+            return columns(Arrays.stream(indexes).boxed().collect(Collectors.toSet()));
+        }
+
+        public ReadOptionsBuilder columns(Set<Integer> indexes) {
+            this.columns = indexes;
+            return this;
+        }
+
+    }
+
+}
@@ -0,0 +1,160 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.UncheckedIOException;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.SynchronousQueue;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Iterator over the records of a parse running on a virtual thread. Records
+ * are handed over one at a time, so the parser works on the next record while
+ * the consumer works on the current one.
+ */
+class RecordStream implements Iterator<Element>, Closeable {
+
+    // marks the end of the parse
+    private static final Element END = new Element();
+
+    private final BlockingQueue<Element> queue = new SynchronousQueue<>();
+
+    private volatile Throwable failure;
+    private volatile boolean closed;
+    private Thread producer;
+
+    private Element next;
+    private boolean done;
+
+    void start(Spec spec, File file) {
+        producer = Thread.ofVirtual().name("fmt-stream-" + file.getName()).start(() -> {
+            try {
+                spec.parse(file, new Builder());
+            } catch (Throwable ex) {
+                failure = ex;
+            }
+            try {
+                if (!closed) {
+                    queue.put(END);
+                }
+            } catch (InterruptedException ex) {
+                // closed while waiting for the consumer
+            }
+        });
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (next != null) {
+            return true;
+        }
+        if (done) {
+            return false;
+        }
+        try {
+            next = queue.take();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new UncheckedIOException(new ParseException("Interrupted while waiting for a record.", ex));
+        }
+        if (next == END) {
+            next = null;
+            done = true;
+            rethrow();
+            return false;
+        }
+        return true;
+    }
+
+    @Override
+    public Element next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Element record = next;
+        next = null;
+        return record;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+        done = true;
+        next = null;
+        if (producer != null) {
+            producer.interrupt();
+        }
+    }
+
+    private void rethrow() {
+        if (failure instanceof ParseException ex) {
+            throw new UncheckedIOException(ex);
+        } else if (failure instanceof RuntimeException ex) {
+            throw ex;
+        } else if (failure instanceof Error ex) {
+            throw ex;
+        } else if (failure != null) {
+            throw new UncheckedIOException(new ParseException(failure));
+        }
+    }
+
+    /**
+     * Builds the tree as usual, except that innermost records are handed to
+     * the consumer instead of being attached to their parent.
+     */
+    private final class Builder extends ElementBuilder {
+
+        // whether the open element at each depth has had a record opened in it
+        private boolean[] nested = new boolean[8];
+
+        @Override
+        public void openRecord(String id) throws ParseException {
+            super.openRecord(id);
+            final int depth = getStack().size() - 1;
+            if (depth >= nested.length) {
+                nested = Arrays.copyOf(nested, nested.length * 2);
+            }
+            nested[depth - 1] = true;
+            nested[depth] = false;
+        }
+
+        @Override
+        public void closeRecord() throws ParseException {
+            final int depth = getStack().size() - 1;
+            if (depth < 1 || nested[depth]) {
+                super.closeRecord();
+                return;
+            }
+
+            Element rec = getStack().pop();
+            fold(rec);
+            try {
+                queue.put(rec);
+            } catch (InterruptedException ex) {
+                throw new ParseException("Record stream was closed.", ex);
+            }
+        }
+
+    }
+
+}
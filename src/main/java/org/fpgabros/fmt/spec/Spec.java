@@ -16,121 +16,314 @@
 package org.fpgabros.fmt.spec;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.InvalidPathException;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import org.fpgabros.fmt.exception.ParseException;
 import org.fpgabros.fmt.model.Element;
-import org.fpgabros.fmt.util.Stack;
+import org.fpgabros.fmt.model.ElementTable;
 
 import lombok.Data;
 
+/**
+ * Immutable description of a file format. Every read builds its own parse
+ * state, so a single spec can be shared between threads.
+ */
 @Data
-public abstract class Spec implements ParseListener {
+public abstract class Spec {
 
-    private final Stack<Element> stack;
+    // files read at once by readAll when no limit is given
+    private static final int DEFAULT_CONCURRENCY = Math.max(4, Runtime.getRuntime().availableProcessors() * 2);
 
     protected Spec() {
-        this.stack = new Stack<>();
+        super();
     }
 
-    public abstract Element read(File file) throws ParseException;
+    public Element read(File file) throws ParseException {
+        return parse(file, new ElementBuilder());
+    }
 
-    @Override
-    public void openFile(String id) throws ParseException {
-        if (!stack.isEmpty()) {
-            throw new ParseException("Parser has not been reset.");
-        }
-        stack.push(new Element(id));
+    /**
+     * Reads the parts of a file selected by the options.
+     */
+    public Element read(File file, ReadOptions options) throws ParseException {
+        return parse(file, new ElementBuilder(), options);
     }
 
-    @Override
-    public void openRecord(String id) throws ParseException {
-        if (stack.isEmpty()) {
-            throw new ParseException("A file must be opened to start a record.");
-        }
-        if (id == null) {
-            int idx = stack.peek().getChildren().size();
-            stack.push(new Element(idx));
-        } else {
-            stack.push(new Element(id));
-        }
+    /**
+     * Reads a file into a listener, such as a writer that stores the tree as
+     * it is parsed.
+     *
+     * @return the result of {@link ParseListener#closeFile()}
+     */
+    public <T> T read(File file, ParseListener<T> listener) throws ParseException {
+        return parse(file, listener);
     }
 
-    @Override
-    public void openRow(Integer index) throws ParseException {
-        if (stack.isEmpty()) {
-            throw new ParseException("A record must be opened to start a row.");
-        }
-        int id = index != null ? index : stack.peek().getChildren().size();
-        stack.push(new Element(id));
+    /**
+     * Reads the parts of a file selected by the options into a listener.
+     *
+     * @return the result of {@link ParseListener#closeFile()}
+     */
+    public <T> T read(File file, ParseListener<T> listener, ReadOptions options) throws ParseException {
+        return parse(file, listener, options);
     }
 
-    @Override
-    public void receive(Integer index, String value) throws ParseException {
-        if (stack.isEmpty()) {
-            throw new ParseException("A row must be opened to receive a value.");
-        }
-        // create a new element
-        int id = index != null ? index : stack.peek().getChildren().size();
-        Element e = new Element(id, value);
+    /**
+     * Reads a file into a primitive listener, which is given indexes without
+     * boxing and, where the parser can, values in place.
+     *
+     * @return the result of {@link PrimitiveParseListener#closeFile()}
+     */
+    public <T> T read(File file, PrimitiveParseListener<T> listener) throws ParseException {
+        return parse(file, listener, ReadOptions.ALL);
+    }
 
-        stack.peek().getChildren().add(e);
+    /**
+     * Reads the parts of a file selected by the options into a primitive
+     * listener.
+     *
+     * @return the result of {@link PrimitiveParseListener#closeFile()}
+     */
+    public <T> T read(File file, PrimitiveParseListener<T> listener, ReadOptions options) throws ParseException {
+        return parse(file, listener, options);
     }
 
-    @Override
-    public void comment(String value) throws ParseException {
-        if (stack.isEmpty()) {
-            throw new ParseException("A file must be opened to process a comment.");
-        }
-        // append comment to value of record
-        String existing = stack.peek().getValue();
-        stack.peek().setValue(existing == null ? value : (existing + "\n" + value));
+    /**
+     * Reads a file from a stream, such as an upload or a classpath resource.
+     * Gzip compressed input is decompressed as it is read. The stream is left
+     * open.
+     *
+     * @param name the id of the file
+     */
+    public Element read(InputStream in, String name) throws ParseException {
+        return parse(in, name, new ElementBuilder());
     }
 
-    @Override
-    public void closeRow() throws ParseException {
-        if (stack.size() < 2) {
-            throw new ParseException("A row cannot be closed. No row is open.");
-        }
-        Element row = stack.pop();
-        stack.peek().getChildren().add(row);
+    /**
+     * Reads a file from a stream into a listener.
+     *
+     * @see #read(InputStream, String)
+     * @return the result of {@link ParseListener#closeFile()}
+     */
+    public <T> T read(InputStream in, String name, ParseListener<T> listener) throws ParseException {
+        return parse(in, name, listener);
+    }
+
+    /**
+     * Reads a file from a channel. The channel is left open.
+     *
+     * @see #read(InputStream, String)
+     */
+    public Element read(ReadableByteChannel channel, String name) throws ParseException {
+        // the stream is not closed, so neither is the channel
+        return parse(Channels.newInputStream(channel), name, new ElementBuilder());
     }
 
-    @Override
-    public void closeRecord() throws ParseException {
-        if (stack.size() < 2) {
-            throw new ParseException("A record cannot be closed. No record is open.");
+    /**
+     * Reads a batch of files concurrently.
+     *
+     * @see #readAll(Collection, int)
+     */
+    public Map<Path, Element> readAll(Collection<Path> paths) throws ParseException {
+        return readAll(paths, DEFAULT_CONCURRENCY);
+    }
+
+    /**
+     * Reads a batch of files on virtual threads, with at most
+     * {@code maxConcurrency} files being parsed at once.
+     *
+     * @return the parsed files, in the order of the collection
+     * @throws ParseException when any file fails to parse, with the failure of
+     *                        each file added as suppressed
+     */
+    public Map<Path, Element> readAll(Collection<Path> paths, int maxConcurrency) throws ParseException {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1.");
         }
 
-        Element rec = stack.pop();
-        fold(rec);
-        stack.peek().getChildren().add(rec);
+        final Map<Path, Future<Element>> futures = new LinkedHashMap<>();
+        final Semaphore permits = new Semaphore(maxConcurrency);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            try {
+                for (Path path : paths) {
+                    if (futures.containsKey(path)) {
+                        continue;
+                    }
+                    permits.acquire();
+                    futures.put(path, executor.submit(() -> {
+                        try {
+                            return read(path.toFile());
+                        } finally {
+                            permits.release();
+                        }
+                    }));
+                }
+            } catch (InterruptedException ex) {
+                // cancel before closing the executor, which waits for every task
+                futures.values().forEach(f -> f.cancel(true));
+                Thread.currentThread().interrupt();
+                throw new ParseException("Interrupted while reading files.", ex);
+            }
+        }
+
+        // collect the results, all tasks are complete once the executor closes
+        final Map<Path, Element> results = new LinkedHashMap<>();
+        final List<ParseException> failures = new ArrayList<>();
+        final List<String> failed = new ArrayList<>();
+        for (Map.Entry<Path, Future<Element>> entry : futures.entrySet()) {
+            try {
+                results.put(entry.getKey(), entry.getValue().get());
+            } catch (ExecutionException ex) {
+                failures.add(new ParseException("Failed to read " + entry.getKey() + ".", ex.getCause()));
+                failed.add(entry.getKey().toString());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new ParseException("Interrupted while reading files.", ex);
+            }
+        }
+        if (!failures.isEmpty()) {
+            final ParseException ex = new ParseException("Failed to read " + failures.size() + " of "
+                    + futures.size() + " files: " + String.join(", ", failed) + ".");
+            failures.forEach(ex::addSuppressed);
+            throw ex;
+        }
+        return results;
+    }
+
+    /**
+     * Streams the records of a file as they are parsed. Each record is handed
+     * over, folded, once its {@code closeRecord} fires and no longer held by
+     * the parser, so only the records in flight are kept in memory. Records
+     * that contain other records are not issued themselves, only their
+     * innermost records are.
+     * <p>
+     * Parsing runs on a separate thread. Parse failures surface as an
+     * {@link java.io.UncheckedIOException} while consuming the stream. The
+     * stream should be closed to stop the parse when it is not consumed to the
+     * end.
+     */
+    public Stream<Element> stream(File file) {
+        final RecordStream records = new RecordStream();
+        records.start(this, file);
+        return StreamSupport
+                .stream(Spliterators.spliteratorUnknownSize(records, Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(records::close);
+    }
+
+    /**
+     * Reads a file into an {@link ElementTable} without building an
+     * {@link Element} per cell.
+     */
+    public ElementTable readTable(File file) throws ParseException {
+        return parse(file, new ElementTableBuilder());
     }
 
-    @Override
-    public Element closeFile() throws ParseException {
-        if (stack.isEmpty()) {
-            throw new ParseException("A file cannot be closed. No file is open.");
+    /**
+     * Issues the events for a file to the listener.
+     *
+     * @return the result of {@link ParseListener#closeFile()}
+     */
+    protected abstract <T> T parse(File file, ParseListener<T> listener) throws ParseException;
+
+    /**
+     * Issues the events for a file read from a stream. Specs that can't parse
+     * a stream directly get a copy of it in a temporary file.
+     *
+     * @return the result of {@link ParseListener#closeFile()}
+     */
+    protected <T> T parse(InputStream in, String name, ParseListener<T> listener) throws ParseException {
+        Path dir = null;
+        try {
+            dir = Files.createTempDirectory("fmt");
+            final Path file = dir.resolve(copyName(name));
+            try (InputStream input = Compression.open(in)) {
+                Files.copy(input, file);
+            }
+            return parse(file.toFile(), listener);
+        } catch (IOException ex) {
+            throw ex instanceof ParseException pex ? pex : new ParseException(ex);
+        } finally {
+            delete(dir);
         }
+    }
 
-        // fold to convert single record files into a single record
-        // instead of a 1-element list
-        // while the root element has 1 child, fold it into the root element
-        Element root = stack.pop();
-        fold(root);
-        return root;
+    /**
+     * @return the file name of a stream's name, or a generic one when the name
+     *         is missing or is not a file name
+     */
+    private static String copyName(String name) {
+        if (name != null && !name.isBlank()) {
+            try {
+                final Path fileName = Path.of(name).getFileName();
+                if (fileName != null && !".".equals(fileName.toString()) && !"..".equals(fileName.toString())) {
+                    return fileName.toString();
+                }
+            } catch (InvalidPathException ex) {
+                // not usable as a file name
+            }
+        }
+        return "input";
     }
 
-    @Override
-    public void reset() throws ParseException {
-        stack.clear();
+    /**
+     * Issues the events selected by the options to the listener. Specs that
+     * wrap another spec should pass the options on, so the parser can apply
+     * them as early as it can.
+     *
+     * @return the result of {@link ParseListener#closeFile()}
+     */
+    protected <T> T parse(File file, ParseListener<T> listener, ReadOptions options) throws ParseException {
+        if (options.isAll()) {
+            return parse(file, listener);
+        }
+        final PrimitiveParseListener<T> projection = new ProjectingListener<>(PrimitiveParseListener.of(listener),
+                options);
+        return parse(file, new PrimitiveListenerAdapter<>(projection));
     }
 
-    private void fold(Element element) {
-        // prevent single child records
-        while (element.getChildren().size() == 1) {
-            Element child = element.getChildren().get(0);
-            element.setValue(child.getValue());
-            element.setChildren(child.getChildren());
+    /**
+     * Issues the events selected by the options to a primitive listener. Specs
+     * that don't issue them natively drive the listener through a
+     * {@link ParseListener}.
+     *
+     * @return the result of {@link PrimitiveParseListener#closeFile()}
+     */
+    protected <T> T parse(File file, PrimitiveParseListener<T> listener, ReadOptions options)
+            throws ParseException {
+        return parse(file, new PrimitiveListenerAdapter<>(listener), options);
+    }
+
+    private static void delete(Path dir) {
+        if (dir == null) {
+            return;
+        }
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : files.toList()) {
+                Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        } catch (IOException ex) {
+            // left for the temporary directory to be cleaned up
         }
     }
 
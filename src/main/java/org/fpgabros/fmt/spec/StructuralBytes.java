@@ -0,0 +1,80 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * Classifies blocks of 64 bytes at a time with the Vector API, giving a
+ * bitmask of the line breaks and the bytes that may start a delimiter. Only
+ * loaded once {@link #isSupported()} is known to be true, as the incubator
+ * module is not resolved unless it is added to the JVM.
+ */
+final class StructuralBytes {
+
+    static final int BLOCK = Long.SIZE;
+
+    private static final VectorSpecies<Byte> SPECIES = ByteVector.SPECIES_PREFERRED;
+
+    private final byte delimiter;
+
+    StructuralBytes(byte delimiter) {
+        this.delimiter = delimiter;
+    }
+
+    /**
+     * @return whether the platform has vectors of at least 128 bits that fit
+     *         a block, as the API is slower than plain loops without them
+     */
+    static boolean isSupported() {
+        return SPECIES.vectorBitSize() >= 128 && BLOCK % SPECIES.length() == 0;
+    }
+
+    /**
+     * @return a mask with bit {@code i} set when {@code array[offset + i]} is
+     *         a line break or the first byte of the delimiter, for the
+     *         {@code length} bytes of the block
+     */
+    long classify(byte[] array, int offset, int length) {
+        if (length < BLOCK) {
+            return classifyTail(array, offset, length);
+        }
+        long mask = 0;
+        for (int i = 0; i < BLOCK; i += SPECIES.length()) {
+            final ByteVector bytes = ByteVector.fromArray(SPECIES, array, offset + i);
+            final VectorMask<Byte> found = bytes.compare(VectorOperators.EQ, (byte) '\n')
+                    .or(bytes.compare(VectorOperators.EQ, (byte) '\r'))
+                    .or(bytes.compare(VectorOperators.EQ, delimiter));
+            mask |= found.toLong() << i;
+        }
+        return mask;
+    }
+
+    private long classifyTail(byte[] array, int offset, int length) {
+        long mask = 0;
+        for (int i = 0; i < length; i++) {
+            final byte b = array[offset + i];
+            if (b == '\n' || b == '\r' || b == delimiter) {
+                mask |= 1L << i;
+            }
+        }
+        return mask;
+    }
+
+}
@@ -0,0 +1,248 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.FileSystems;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.Element;
+
+/**
+ * Follows a multipart text file that is being appended to, issuing each
+ * record once the blank line after it has been written. The follower keeps
+ * the offset of the last complete line and the record still being read, so
+ * each poll only reads the bytes appended since the last one.
+ * <p>
+ * A file that shrinks, or whose first bytes changed, is read again from the
+ * start. This catches files truncated and rewritten in place, as by
+ * copytruncate rotation, even when they grew past the offset already read.
+ * A file rewritten with the same first {@value #HEAD} bytes that is no
+ * shorter than before is not noticed. A file that is replaced, such as by
+ * log rotation, is read to its end, closing its last record, and the new
+ * file is then followed from the start. Record ids restart with each file.
+ * A follower is not thread safe.
+ */
+public class TextFollower implements Closeable {
+
+    // leading bytes compared on each poll to notice a rewritten file
+    private static final int HEAD = 4096;
+
+    private final TextSpec spec;
+    private final Path path;
+
+    private FileChannel channel;
+    private Object fileKey;
+    // position after the last complete line
+    private long offset;
+    // first bytes of the file up to the offset, at most HEAD of them
+    private byte[] head = new byte[0];
+
+    private Collector collector;
+    private TextScanner scanner;
+    private final List<Element> completed = new ArrayList<>();
+
+    private WatchService watcher;
+
+    public TextFollower(TextSpec spec, Path path) {
+        if (!spec.isMultipart()) {
+            throw new IllegalArgumentException("Only multipart files can be followed.");
+        }
+        this.spec = spec;
+        this.path = path.toAbsolutePath();
+        if (!new TextScanner(spec, PrimitiveParseListener.of(new ElementBuilder())).isByteScannable()) {
+            throw new IllegalArgumentException("Files can only be followed when they can be scanned as bytes.");
+        }
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return the position after the last complete line read
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    /**
+     * Reads what was appended since the last poll.
+     *
+     * @return the records completed since the last poll, in file order
+     */
+    public List<Element> poll() throws ParseException {
+        try {
+            final BasicFileAttributes attributes;
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (NoSuchFileException ex) {
+                // between a rotation and the new file being created
+                return drain();
+            }
+
+            if (channel != null && attributes.fileKey() != null && !Objects.equals(fileKey, attributes.fileKey())) {
+                // replaced, finish the previous file
+                scanner.scan(channel, offset, channel.size());
+                closeChannel();
+            }
+            if (channel == null) {
+                channel = FileChannel.open(path, StandardOpenOption.READ);
+                fileKey = attributes.fileKey();
+                restart();
+            }
+
+            final long size = channel.size();
+            if (size < offset || !Arrays.equals(head, read(head.length))) {
+                // truncated or rewritten, the open record can't be trusted
+                restart();
+            }
+            if (size > offset) {
+                offset += scanner.scanAppended(channel, offset, size);
+                if (head.length < HEAD && offset > head.length) {
+                    head = read((int) Math.min(offset, HEAD));
+                }
+            }
+            return drain();
+        } catch (IOException ex) {
+            throw ex instanceof ParseException pex ? pex : new ParseException(ex);
+        }
+    }
+
+    /**
+     * Polls the file, waiting for it to change when nothing new has completed.
+     *
+     * @return the completed records, empty when none completed within the
+     *         timeout
+     */
+    public List<Element> await(Duration timeout) throws ParseException, InterruptedException {
+        final long deadline = System.nanoTime() + timeout.toNanos();
+        try {
+            if (watcher == null) {
+                watcher = FileSystems.getDefault().newWatchService();
+                path.getParent().register(watcher, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        } catch (IOException ex) {
+            throw new ParseException(ex);
+        }
+
+        List<Element> records = poll();
+        while (records.isEmpty()) {
+            final long remaining = deadline - System.nanoTime();
+            final WatchKey key = remaining > 0 ? watcher.poll(remaining, TimeUnit.NANOSECONDS) : null;
+            if (key == null) {
+                break;
+            }
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                changed |= event.kind() == StandardWatchEventKinds.OVERFLOW
+                        || path.getFileName().equals(event.context());
+            }
+            key.reset();
+            if (changed) {
+                records = poll();
+            }
+        }
+        return records;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            closeChannel();
+        } finally {
+            if (watcher != null) {
+                watcher.close();
+                watcher = null;
+            }
+        }
+    }
+
+    private void restart() throws ParseException {
+        offset = 0;
+        head = new byte[0];
+        collector = new Collector();
+        collector.openFile(path.getFileName().toString());
+        // the root record the records are read into
+        collector.openRecord(null);
+        scanner = new TextScanner(spec, PrimitiveParseListener.of(collector));
+    }
+
+    /**
+     * @return the first bytes of the file, fewer when it is shorter
+     */
+    private byte[] read(int length) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(length);
+        while (buffer.hasRemaining() && channel.read(buffer, buffer.position()) > 0) {
+            // until full or at the end of the file
+        }
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    private List<Element> drain() {
+        final List<Element> records = List.copyOf(completed);
+        completed.clear();
+        return records;
+    }
+
+    private void closeChannel() throws IOException {
+        if (channel != null) {
+            channel.close();
+            channel = null;
+            fileKey = null;
+        }
+    }
+
+    /**
+     * Builds records as usual, except that completed records are handed out
+     * instead of being kept under the root.
+     */
+    private final class Collector extends ElementBuilder {
+
+        @Override
+        public void closeRecord() throws ParseException {
+            // file, root record and the record being closed
+            if (getStack().size() != 3) {
+                super.closeRecord();
+                return;
+            }
+            final Element record = getStack().pop();
+            fold(record);
+            completed.add(record);
+        }
+
+    }
+
+}
@@ -0,0 +1,666 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.fpgabros.fmt.exception.ParseException;
+
+/**
+ * Line scanner behind {@link TextSpec}. For ASCII compatible charsets and
+ * literal delimiters the input is scanned as raw bytes, straight out of a
+ * {@link FileChannel} (memory mapped for large files), and only the field
+ * values are decoded. Otherwise lines are read through a
+ * {@link BufferedReader} and split on the delimiter pattern. When the
+ * listener is a {@link ProjectingListener} the fields of unselected columns
+ * are not decoded and scanning stops once its limits are reached.
+ * <p>
+ * When the JVM runs with {@code --add-modules jdk.incubator.vector} and has
+ * SIMD registers, line breaks and delimiters are found 64 bytes at a time by
+ * {@link StructuralBytes}, and the input is read into heap buffers rather
+ * than mapped. Setting {@code fmt.vector=false} turns this off.
+ */
+class TextScanner {
+
+    private static final int READ_BUFFER = 64 * 1024;
+    private static final long MAP_THRESHOLD = 4L * 1024 * 1024;
+    static final int MAP_WINDOW = 64 * 1024 * 1024;
+    // largest buffer or mapping a line can be held in
+    private static final int MAX_LINE = Integer.MAX_VALUE - 8;
+
+    private static final String REGEX_META = ".$|()[{^?*+\\";
+
+    private static final boolean VECTOR = isVectorSupported();
+
+    private final PrimitiveParseListener<?> listener;
+    // read options applied by the listener, null when reading everything
+    private final ProjectingListener<?> projection;
+    private final Charset charset;
+    private final String delimiter;
+    private final String commentToken;
+    private final boolean multipart;
+    // hand values over as slices of the input buffers
+    private final boolean lazy;
+    // hand ascii values over as characters, for listeners that read them in
+    // place; adapted listeners want Strings, which decode faster from bytes
+    private final boolean inPlace;
+
+    private final byte[] delimiterBytes;
+    private final byte[] commentBytes;
+    // bytes mapped at a time from large files, doubled for longer lines
+    private final int mapWindow;
+    // finds line breaks and delimiters a block at a time, null when scalar
+    private final StructuralBytes structural;
+
+    // delimiter candidates of the current line, while scanning by blocks
+    private boolean indexed;
+    private int[] candidates = new int[64];
+    private int candidateCount;
+    private int nextCandidate;
+
+    // scratch space for decoding out of direct buffers
+    private byte[] scratch = new byte[256];
+    // ascii fields handed to the listener in place
+    private char[] chars = new char[256];
+
+    // track the multi part record state
+    private boolean processingSubRecord;
+
+    TextScanner(TextSpec spec, PrimitiveParseListener<?> listener) {
+        this(spec, listener, true, MAP_WINDOW);
+    }
+
+    /**
+     * @param vector    whether to find line breaks and delimiters with the
+     *                  Vector API, when it is available
+     * @param mapWindow the bytes to map at a time from large files
+     */
+    TextScanner(TextSpec spec, PrimitiveParseListener<?> listener, boolean vector, int mapWindow) {
+        this.listener = listener;
+        this.projection = listener instanceof ProjectingListener<?> p ? p : null;
+        this.charset = spec.getCharset();
+        this.delimiter = spec.getDelimiter();
+        this.commentToken = spec.getCommentToken();
+        this.multipart = spec.isMultipart();
+        this.lazy = spec.isLazy();
+        this.inPlace = !((projection != null ? projection.getDelegate() : listener) instanceof ParseListenerAdapter);
+        this.delimiterBytes = delimiter.getBytes(charset);
+        this.commentBytes = commentToken.getBytes(charset);
+        this.mapWindow = mapWindow;
+        this.structural = vector && VECTOR && isByteScannable() && delimiterBytes.length > 0
+                ? new StructuralBytes(delimiterBytes[0])
+                : null;
+    }
+
+    /**
+     * @return true when lines, delimiters and comments can be found in the raw
+     *         bytes without decoding them first
+     */
+    boolean isByteScannable() {
+        return isLiteral(delimiter) && isAsciiCompatible(charset);
+    }
+
+    void scan(BufferedReader bufferedReader) throws IOException {
+        // read all the lines
+        String line = null;
+        while (!stopped() && (line = bufferedReader.readLine()) != null) {
+            line(line);
+        }
+        finish();
+    }
+
+    void scan(FileChannel channel) throws IOException {
+        scan(channel, 0, channel.size());
+    }
+
+    /**
+     * Scans the bytes in {@code [from, to)} of a file. The range should start
+     * at the beginning of a line.
+     */
+    void scan(FileChannel channel, long from, long to) throws IOException {
+        if (to - from < MAP_THRESHOLD || structural != null) {
+            scan(new FileRange(channel, from, to));
+            return;
+        }
+
+        long position = from;
+        int window = mapWindow;
+        while (position < to && !stopped()) {
+            final int length = (int) Math.min(window, to - position);
+            final boolean eof = position + length == to;
+            final ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, position, length);
+            final int consumed = lines(buffer, 0, length, eof);
+            if (consumed == 0 && !eof) {
+                // a single line larger than the window
+                window = grow(window, position);
+            }
+            position += consumed;
+        }
+        finish();
+    }
+
+    void scan(ReadableByteChannel channel) throws IOException {
+        drain(channel, true);
+        finish();
+    }
+
+    /**
+     * Scans the complete lines in {@code [from, to)} of a file that is still
+     * being written. A partial last line is left for the next scan, and a
+     * record still open at the end stays open.
+     *
+     * @return the number of bytes scanned
+     */
+    long scanAppended(FileChannel channel, long from, long to) throws IOException {
+        return drain(new FileRange(channel, from, to), false);
+    }
+
+    /**
+     * Issues the lines read from a channel.
+     *
+     * @param complete whether the input ends with the channel, so a last line
+     *                 without a line break is issued too
+     * @return the number of bytes issued
+     */
+    private long drain(ReadableByteChannel channel, boolean complete) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER);
+        long issued = 0;
+        boolean eof = false;
+        while (!eof && !stopped()) {
+            eof = channel.read(buffer) < 0;
+            final int consumed = lines(buffer, 0, buffer.position(), eof && complete);
+            issued += consumed;
+            if (consumed == 0 && !buffer.hasRemaining()) {
+                // a single line larger than the buffer
+                final ByteBuffer grown = ByteBuffer.allocate(grow(buffer.capacity(), issued));
+                buffer.flip();
+                grown.put(buffer);
+                buffer = grown;
+            } else if (lazy) {
+                // values may still refer to this buffer, move the partial line to a new one
+                final ByteBuffer next = ByteBuffer.allocate(buffer.capacity());
+                next.put(buffer.slice(consumed, buffer.position() - consumed));
+                buffer = next;
+            } else {
+                // keep the partial line for the next read
+                buffer.limit(buffer.position()).position(consumed);
+                buffer.compact();
+            }
+        }
+        return issued;
+    }
+
+    /**
+     * Finds the first blank line that starts in {@code [from, to)}. Any record
+     * open before a blank line is closed by it, so a multipart file can be
+     * split there and each part parsed on its own.
+     *
+     * @return the position the blank line starts at, or -1 if there is none
+     */
+    static long findBlankLine(FileChannel channel, long from, long to) throws IOException {
+        final ByteBuffer buffer = ByteBuffer.allocate(READ_BUFFER);
+        // start of the current line, -1 while it started before from
+        long start = from == 0 ? 0 : -1;
+        boolean blank = true;
+        boolean afterCR = false;
+        // look one byte back to tell if from is itself a line start
+        long position = Math.max(from - 1, 0);
+        int read;
+        while ((read = channel.read(buffer.clear(), position)) > 0) {
+            for (int i = 0; i < read; i++, position++) {
+                final byte b = buffer.get(i);
+                if (position < from) {
+                    if (b == '\n' || b == '\r') {
+                        start = from;
+                        afterCR = b == '\r';
+                    }
+                } else if (afterCR && b == '\n') {
+                    // second half of a \r\n pair
+                    afterCR = false;
+                    start = position + 1;
+                } else if (b == '\n' || b == '\r') {
+                    if (start >= 0 && blank) {
+                        return start;
+                    }
+                    afterCR = b == '\r';
+                    start = position + 1;
+                    blank = true;
+                } else {
+                    afterCR = false;
+                    blank &= isWhitespace(b);
+                }
+                if (start >= to) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the doubled size of a buffer that could not hold the line
+     *         starting at a position
+     * @throws ParseException when the buffer can't grow any further
+     */
+    private static int grow(int size, long position) throws ParseException {
+        if (size >= MAX_LINE) {
+            throw new ParseException("The line at byte " + position + " is longer than " + MAX_LINE + " bytes.");
+        }
+        return (int) Math.min((long) size * 2, MAX_LINE);
+    }
+
+    private void finish() throws ParseException {
+        // if we're in a subrecord, we need to make sure it gets closed
+        if (processingSubRecord) {
+            // issue end of record
+            listener.closeRecord();
+            processingSubRecord = false;
+        }
+    }
+
+    /**
+     * Issues every complete line in {@code [from, to)}.
+     *
+     * @return the index after the last complete line
+     */
+    private int lines(ByteBuffer buffer, int from, int to, boolean eof) throws ParseException {
+        if (structural != null && buffer.hasArray()) {
+            indexed = true;
+            try {
+                return indexedLines(buffer, from, to, eof);
+            } finally {
+                indexed = false;
+            }
+        }
+        int start = from;
+        for (int i = from; i < to; i++) {
+            final byte b = buffer.get(i);
+            if (b == '\n') {
+                line(buffer, start, i);
+                start = i + 1;
+                if (stopped()) {
+                    return to;
+                }
+            } else if (b == '\r') {
+                if (i + 1 == to && !eof) {
+                    // can't tell yet if this is a \r\n pair
+                    break;
+                }
+                line(buffer, start, i);
+                if (i + 1 < to && buffer.get(i + 1) == '\n') {
+                    i++;
+                }
+                start = i + 1;
+                if (stopped()) {
+                    return to;
+                }
+            }
+        }
+        if (eof && start < to) {
+            line(buffer, start, to);
+            start = to;
+        }
+        return start;
+    }
+
+    /**
+     * Issues every complete line in {@code [from, to)} the same as
+     * {@link #lines(ByteBuffer, int, int, boolean)}, visiting only the line
+     * breaks and delimiter candidates found by classifying the bytes a block
+     * at a time.
+     */
+    private int indexedLines(ByteBuffer buffer, int from, int to, boolean eof) throws ParseException {
+        final byte[] array = buffer.array();
+        final int offset = buffer.arrayOffset();
+        int start = from;
+        candidateCount = 0;
+        for (int block = from; block < to; block += StructuralBytes.BLOCK) {
+            long mask = structural.classify(array, offset + block, Math.min(StructuralBytes.BLOCK, to - block));
+            while (mask != 0) {
+                final int i = block + Long.numberOfTrailingZeros(mask);
+                mask &= mask - 1;
+                if (i < start) {
+                    // the \n of a \r\n pair
+                    continue;
+                }
+                final byte b = array[offset + i];
+                if (b != '\n' && b != '\r') {
+                    if (candidateCount == candidates.length) {
+                        candidates = Arrays.copyOf(candidates, candidateCount * 2);
+                    }
+                    candidates[candidateCount++] = i;
+                    continue;
+                }
+                if (b == '\r' && i + 1 == to && !eof) {
+                    // can't tell yet if this is a \r\n pair
+                    return start;
+                }
+                line(buffer, start, i);
+                candidateCount = 0;
+                start = b == '\r' && i + 1 < to && array[offset + i + 1] == '\n' ? i + 2 : i + 1;
+                if (stopped()) {
+                    return to;
+                }
+            }
+        }
+        if (eof && start < to) {
+            line(buffer, start, to);
+            start = to;
+        }
+        return start;
+    }
+
+    private void line(ByteBuffer buffer, int start, int end) throws ParseException {
+        // find the first non whitespace byte
+        int first = start;
+        while (first < end && isWhitespace(buffer.get(first))) {
+            first++;
+        }
+        if (first == end) {
+            blankLine();
+            return;
+        }
+        if (buffer.get(first) < 0) {
+            // may be non ascii whitespace, let the decoded line decide
+            line(decode(buffer, start, end));
+            return;
+        }
+
+        openSubRecord();
+        if (startsWith(buffer, first, end, commentBytes)) {
+            // strip the comment token and issue a comment
+            final int from = commentBytes.length == 0 ? start : first + commentBytes.length;
+            listener.comment(decode(buffer, from, end));
+        } else {
+            parseRow(buffer, start, end);
+        }
+    }
+
+    private void line(String line) throws ParseException {
+        // process line
+        if (line.isBlank()) {
+            blankLine();
+        } else {
+            openSubRecord();
+            // process row
+            if (!parseComment(line)) {
+                parseRow(line);
+            }
+        }
+    }
+
+    private void blankLine() throws ParseException {
+        if (processingSubRecord) {
+            // issue end of record
+            listener.closeRecord();
+            processingSubRecord = false;
+        }
+    }
+
+    private void openSubRecord() throws ParseException {
+        // if not in record, start new record (when enabled)
+        if (multipart && !processingSubRecord) {
+            processingSubRecord = true;
+            // issue start of record. We never know the id
+            listener.openRecord(null);
+        }
+    }
+
+    private void parseRow(ByteBuffer buffer, int start, int end) throws ParseException {
+        listener.openRow(PrimitiveParseListener.NO_INDEX);
+        final int columnLimit = projection == null ? Integer.MAX_VALUE : projection.columnLimit();
+        // trailing empty fields are dropped, the same as String.split, so
+        // empty fields are only issued once a later field has a value
+        int firstEmpty = 0;
+        int column = 0;
+        int fieldStart = start;
+        nextCandidate = 0;
+        while (firstEmpty < columnLimit) {
+            final int i = nextDelimiter(buffer, fieldStart, end);
+            if (i != fieldStart) {
+                for (int c = firstEmpty; c < column; c++) {
+                    if (selects(c)) {
+                        listener.receive(index(c), "");
+                    }
+                }
+                // unselected fields are never decoded
+                if (selects(column)) {
+                    if (lazy) {
+                        listener.receive(index(column), new ByteSlice(buffer, fieldStart, i - fieldStart, charset));
+                    } else if (inPlace) {
+                        receive(index(column), buffer, fieldStart, i);
+                    } else {
+                        listener.receive(index(column), decode(buffer, fieldStart, i));
+                    }
+                }
+                firstEmpty = column + 1;
+            }
+            column++;
+            if (i == end) {
+                break;
+            }
+            fieldStart = i + delimiterBytes.length;
+        }
+        listener.closeRow();
+    }
+
+    /**
+     * @return the start of the first delimiter in {@code [from, end)}, or
+     *         {@code end} when there is none
+     */
+    private int nextDelimiter(ByteBuffer buffer, int from, int end) {
+        if (indexed) {
+            while (nextCandidate < candidateCount) {
+                final int i = candidates[nextCandidate++];
+                // candidates inside the previous delimiter are skipped
+                if (i >= from && startsWith(buffer, i, end, delimiterBytes)) {
+                    return i;
+                }
+            }
+            return end;
+        }
+        for (int i = from; i < end; i++) {
+            if (startsWith(buffer, i, end, delimiterBytes)) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    private void parseRow(String line) throws ParseException {
+        listener.openRow(PrimitiveParseListener.NO_INDEX);
+        final String[] fields = line.split(delimiter);
+        for (int c = 0; c < fields.length; c++) {
+            if (selects(c)) {
+                listener.receive(index(c), fields[c]);
+            }
+        }
+        listener.closeRow();
+    }
+
+    private boolean selects(int column) {
+        return projection == null || projection.selectsColumn(column);
+    }
+
+    /**
+     * @return the index to issue a field with, fields are numbered by the
+     *         listener unless columns are left out
+     */
+    private int index(int column) {
+        return projection == null ? PrimitiveParseListener.NO_INDEX : column;
+    }
+
+    private boolean stopped() {
+        return projection != null && projection.isDone();
+    }
+
+    private boolean parseComment(String line) throws ParseException {
+        // if the line starts with the comment token (or ws then token)
+        if (line.stripLeading().startsWith(commentToken)) {
+            // strip the comment token and issue a comment
+            line = line.substring(line.indexOf(commentToken) + commentToken.length());
+            listener.comment(line);
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Issues a field, ascii ones as characters widened into a reused array
+     * rather than as a String.
+     */
+    private void receive(int index, ByteBuffer buffer, int start, int end) throws ParseException {
+        final int length = end - start;
+        if (chars.length < length) {
+            chars = new char[Math.max(length, chars.length * 2)];
+        }
+        for (int i = 0; i < length; i++) {
+            final byte b = buffer.get(start + i);
+            if (b < 0) {
+                listener.receive(index, decode(buffer, start, end));
+                return;
+            }
+            chars[i] = (char) b;
+        }
+        listener.receive(index, chars, 0, length);
+    }
+
+    private String decode(ByteBuffer buffer, int start, int end) {
+        final int length = end - start;
+        if (buffer.hasArray()) {
+            return new String(buffer.array(), buffer.arrayOffset() + start, length, charset);
+        }
+        if (scratch.length < length) {
+            scratch = new byte[Math.max(length, scratch.length * 2)];
+        }
+        buffer.get(start, scratch, 0, length);
+        return new String(scratch, 0, length, charset);
+    }
+
+    private static boolean startsWith(ByteBuffer buffer, int index, int end, byte[] token) {
+        if (end - index < token.length) {
+            return false;
+        }
+        for (int i = 0; i < token.length; i++) {
+            if (buffer.get(index + i) != token[i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isVectorSupported() {
+        if (!Boolean.parseBoolean(System.getProperty("fmt.vector", "true"))
+                || ModuleLayer.boot().findModule("jdk.incubator.vector").isEmpty()) {
+            return false;
+        }
+        try {
+            return StructuralBytes.isSupported();
+        } catch (LinkageError ex) {
+            return false;
+        }
+    }
+
+    static boolean isWhitespace(byte b) {
+        // ascii subset of Character.isWhitespace
+        return b == ' ' || (b >= '\t' && b <= '\r') || (b >= 0x1C && b <= 0x1F);
+    }
+
+    /**
+     * A slice of a file read with positional reads, so several scanners can
+     * share one channel.
+     */
+    private static final class FileRange implements ReadableByteChannel {
+
+        private final FileChannel channel;
+        private final long to;
+        private long position;
+
+        FileRange(FileChannel channel, long from, long to) {
+            this.channel = channel;
+            this.position = from;
+            this.to = to;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            final long remaining = to - position;
+            if (remaining <= 0) {
+                return -1;
+            }
+            final int limit = dst.limit();
+            if (dst.remaining() > remaining) {
+                dst.limit(dst.position() + (int) remaining);
+            }
+            try {
+                final int read = channel.read(dst, position);
+                if (read > 0) {
+                    position += read;
+                }
+                return read;
+            } finally {
+                dst.limit(limit);
+            }
+        }
+
+        @Override
+        public boolean isOpen() {
+            return channel.isOpen();
+        }
+
+        @Override
+        public void close() {
+            // the channel is owned by the caller
+        }
+
+    }
+
+    private static boolean isLiteral(String delimiter) {
+        if (delimiter.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < delimiter.length(); i++) {
+            if (REGEX_META.indexOf(delimiter.charAt(i)) >= 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isAsciiCompatible(Charset charset) {
+        if (StandardCharsets.UTF_8.equals(charset) || StandardCharsets.US_ASCII.equals(charset)
+                || StandardCharsets.ISO_8859_1.equals(charset)) {
+            return true;
+        }
+        // single byte charsets that leave ascii untouched
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1.0f) {
+            return false;
+        }
+        final byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return new String(ascii, StandardCharsets.US_ASCII).equals(new String(ascii, charset));
+    }
+
+}
@@ -19,9 +19,23 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
 
 import org.fpgabros.fmt.exception.ParseException;
 import org.fpgabros.fmt.model.Element;
@@ -33,97 +47,227 @@ import lombok.EqualsAndHashCode;
 @EqualsAndHashCode(callSuper = true)
 public class TextSpec extends Spec {
 
+    // size of the chunks a parallel read aims for
+    private static final long PARALLEL_CHUNK = 16L * 1024 * 1024;
+
     private final Charset charset;
     private final String delimiter;
     private final String commentToken;
     private final boolean multipart;
+    // keep cell values in the input buffers until they are read
+    private final boolean lazy;
 
     public TextSpec() {
         this(StandardCharsets.UTF_8, ",", ";", true);
     }
 
     public TextSpec(Charset charset, String delimiter, String commentToken, boolean multipart) {
+        this(charset, delimiter, commentToken, multipart, false);
+    }
+
+    /**
+     * @param lazy when set, cell values are kept as slices of the input and
+     *             only decoded when {@link Element#getValue()} is called. The
+     *             input buffers stay in memory for as long as the tree does.
+     *             Applies when the file can be scanned as bytes.
+     */
+    public TextSpec(Charset charset, String delimiter, String commentToken, boolean multipart, boolean lazy) {
         super();
         this.charset = charset;
         this.delimiter = delimiter;
         this.commentToken = commentToken;
         this.multipart = multipart;
+        this.lazy = lazy;
+    }
+
+    @Override
+    protected <T> T parse(File file, ParseListener<T> listener) throws ParseException {
+        return parse(file, PrimitiveParseListener.of(listener), ReadOptions.ALL);
     }
 
     @Override
-    public Element read(File file) throws ParseException {
-        try (Reader reader = new FileReader(file, charset);
-                BufferedReader bufferedReader = new BufferedReader(reader)) {
+    protected <T> T parse(File file, ParseListener<T> listener, ReadOptions options) throws ParseException {
+        return parse(file, PrimitiveParseListener.of(listener), options);
+    }
+
+    @Override
+    protected <T> T parse(File file, PrimitiveParseListener<T> target, ReadOptions options) throws ParseException {
+        final PrimitiveParseListener<T> listener = options.isAll() ? target : new ProjectingListener<>(target, options);
+        try {
+            if (Compression.isGzip(file)) {
+                try (InputStream in = Files.newInputStream(file.toPath())) {
+                    return parse(file.getName(), listener, scanner -> scan(in, scanner));
+                }
+            }
+        } catch (IOException ex) {
+            throw ex instanceof ParseException pex ? pex : new ParseException(ex);
+        }
+        return parse(file.getName(), listener, scanner -> parseLines(file, scanner));
+    }
+
+    /**
+     * Scans the stream as it is read, decompressing gzip input on the fly.
+     */
+    @Override
+    protected <T> T parse(InputStream in, String name, ParseListener<T> listener) throws ParseException {
+        return parse(name, PrimitiveParseListener.of(listener), scanner -> scan(in, scanner));
+    }
+
+    private <T> T parse(String name, PrimitiveParseListener<T> listener, LineSource source) throws ParseException {
+        try {
             // issue start of file
-            openFile(file.getName());
+            listener.openFile(name);
             // open a root record (will get folded if a multipart)
-            openRecord(null);
+            listener.openRecord(null);
 
-            parseLines(bufferedReader);
+            source.scan(new TextScanner(this, listener));
 
             // close the root record
-            closeRecord();
+            listener.closeRecord();
 
             // issue end of file
-            return closeFile();
+            return listener.closeFile();
         } catch (IOException ex) {
-            reset();
+            listener.reset();
             throw new ParseException(ex);
         }
     }
 
-    private void parseLines(BufferedReader bufferedReader) throws IOException {
-        // track the multi part record state
-        boolean processingSubRecord = false;
-
-        // read all the lines
-        String line = null;
-        while ((line = bufferedReader.readLine()) != null) {
-            // process line
-            if (line.isBlank()) {
-                if (processingSubRecord) {
-                    // issue end of record
-                    closeRecord();
-                    processingSubRecord = false;
-                }
+    private void scan(InputStream in, TextScanner scanner) throws IOException {
+        try (InputStream input = Compression.open(in)) {
+            if (scanner.isByteScannable()) {
+                scanner.scan(Channels.newChannel(input));
             } else {
-                // if not in record, start new record (when enabled)
-                if (multipart && !processingSubRecord) {
-                    processingSubRecord = true;
-                    // issue start of record. We never know the id
-                    openRecord(null);
+                scanner.scan(new BufferedReader(new InputStreamReader(input, charset)));
+            }
+        }
+    }
+
+    /**
+     * Reads a multipart file in chunks on the common fork join pool.
+     *
+     * @see #readParallel(File, Executor)
+     */
+    public Element readParallel(File file) throws ParseException {
+        return readParallel(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads a multipart file by splitting it on blank lines and parsing the
+     * chunks concurrently on the executor. The records of each chunk are
+     * stitched under the root in file order, giving the same tree as
+     * {@link #read(File)}. Files that are not multipart, or that can't be
+     * scanned as bytes, are read serially.
+     */
+    public Element readParallel(File file, Executor executor) throws ParseException {
+        return readParallel(file, executor, PARALLEL_CHUNK);
+    }
+
+    Element readParallel(File file, Executor executor, long chunkSize) throws ParseException {
+        final ElementBuilder builder = new ElementBuilder();
+        try {
+            final boolean byteScannable = new TextScanner(this, PrimitiveParseListener.of(builder)).isByteScannable();
+            if (!multipart || !byteScannable || Compression.isGzip(file)) {
+                return parse(file, builder);
+            }
+        } catch (IOException ex) {
+            throw ex instanceof ParseException pex ? pex : new ParseException(ex);
+        }
+
+        final List<CompletableFuture<List<Element>>> chunks = new ArrayList<>();
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            // find the chunk boundaries
+            final long size = channel.size();
+            final List<Long> splits = new ArrayList<>();
+            splits.add(0L);
+            for (long target = chunkSize; target < size; target += chunkSize) {
+                final long from = Math.max(target, splits.get(splits.size() - 1) + 1);
+                final long split = from < size ? TextScanner.findBlankLine(channel, from, size) : -1;
+                if (split < 0) {
+                    break;
                 }
-                // process row
-                if (!parseComment(line)) {
-                    parseRow(line);
+                splits.add(split);
+                target = split;
+            }
+            splits.add(size);
+
+            // parse each chunk into its own list of records
+            for (int i = 0; i + 1 < splits.size(); i++) {
+                final long from = splits.get(i);
+                final long to = splits.get(i + 1);
+                chunks.add(CompletableFuture.supplyAsync(() -> parseChunk(file, channel, from, to), executor));
+            }
+
+            // stitch the records together in file order
+            builder.openFile(file.getName());
+            builder.openRecord(null);
+            int index = 0;
+            for (CompletableFuture<List<Element>> chunk : chunks) {
+                for (Element record : chunk.join()) {
+                    record.setId(Integer.toString(index++));
+                    builder.attach(record);
                 }
             }
+            builder.closeRecord();
+            return builder.closeFile();
+        } catch (CompletionException ex) {
+            // chunks that haven't started are skipped, their records are of no use now
+            chunks.forEach(chunk -> chunk.cancel(false));
+            final Throwable cause = ex.getCause() instanceof UncheckedIOException uex ? uex.getCause() : ex.getCause();
+            throw cause instanceof ParseException pex ? pex : new ParseException(cause);
+        } catch (IOException ex) {
+            throw ex instanceof ParseException pex ? pex : new ParseException(ex);
         }
+    }
 
-        // if we're in a subrecord, we need to make sure it gets closed
-        if (processingSubRecord) {
-            // issue end of record
-            closeRecord();
-        }
+    /**
+     * Follows a multipart file that is being appended to.
+     *
+     * @see TextFollower
+     */
+    public TextFollower follow(Path path) {
+        return new TextFollower(this, path);
+    }
+
+    /**
+     * Reads a multipart file that is edited in place, parsing only the records
+     * that changed between reads.
+     *
+     * @see IncrementalReader
+     */
+    public IncrementalReader incremental(Path path) {
+        return new IncrementalReader(this, path);
     }
 
-    private void parseRow(String line) throws ParseException {
-        openRow(null);
-        for (String field : line.split(delimiter)) {
-            receive(null, field);
+    private List<Element> parseChunk(File file, FileChannel channel, long from, long to) {
+        final ElementBuilder builder = new ElementBuilder();
+        try {
+            builder.openFile(file.getName());
+            builder.openRecord(null);
+            new TextScanner(this, PrimitiveParseListener.of(builder)).scan(channel, from, to);
+            // the sub records collected under the root record
+            return builder.getStack().peek().getChildren();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
         }
-        closeRow();
     }
 
-    private boolean parseComment(String line) throws ParseException {
-        // if the line starts with the comment token (or ws then token)
-        if (line.stripLeading().startsWith(commentToken)) {
-            // strip the comment token and issue a comment
-            line = line.substring(line.indexOf(commentToken) + commentToken.length());
-            comment(line);
-            return true;
+    private void parseLines(File file, TextScanner scanner) throws IOException {
+        if (scanner.isByteScannable()) {
+            try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+                scanner.scan(channel);
+            }
+        } else {
+            try (Reader reader = new FileReader(file, charset);
+                    BufferedReader bufferedReader = new BufferedReader(reader)) {
+                scanner.scan(bufferedReader);
+            }
         }
-        return false;
+    }
+
+    @FunctionalInterface
+    private interface LineSource {
+        void scan(TextScanner scanner) throws IOException;
     }
 
 }
@@ -0,0 +1,439 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.text.DateFormat;
+import java.util.Arrays;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.ExcelNumberFormat;
+import org.apache.poi.ss.usermodel.FormulaError;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.apache.poi.xssf.usermodel.XSSFRichTextString;
+import org.fpgabros.fmt.exception.ParseException;
+import org.xml.sax.Attributes;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * SAX handler for a single worksheet part. Rows are buffered one at a time and
+ * issued to the listener with the same record, comment and blank row handling
+ * as {@link XLSXSpec#read(java.io.File)} performs on a loaded workbook, so
+ * memory use does not depend on the number of rows in the sheet. When typed,
+ * numeric, date and boolean cells are kept as numbers and only formatted when
+ * their text is needed.
+ */
+class XLSXSheetHandler extends DefaultHandler {
+
+    // kinds of a buffered cell
+    private static final byte TEXT = 0;
+    private static final byte NUMBER = 1;
+    private static final byte DATE = 2;
+    private static final byte BOOLEAN = 3;
+
+    private final ProjectingListener<?> listener;
+    private final String commentToken;
+    private final SharedStrings sharedStrings;
+    private final StylesTable styles;
+    private final boolean date1904;
+    private final boolean typed;
+
+    // cache of which cell styles carry a date format
+    private Boolean[] dateStyles = new Boolean[0];
+    private DateFormat dateFormat;
+
+    // multi part record state
+    private boolean readingSubRecord;
+
+    // current row, cells indexed by column (null when the cell is not present)
+    private String[] cells = new String[16];
+    // typed cells, which have no string
+    private byte[] kinds = new byte[16];
+    private double[] numbers = new double[16];
+    private int lastCellNum;
+    private int rowNum;
+    private int nextRowNum;
+
+    // current cell
+    private int column;
+    private String type;
+    private int style;
+    private boolean formula;
+    private boolean value;
+    private boolean inlineString;
+    private boolean phonetic;
+    private StringBuilder collecting;
+    private final StringBuilder text = new StringBuilder();
+    private final StringBuilder formulaText = new StringBuilder();
+    private final StringBuilder valueText = new StringBuilder();
+
+    XLSXSheetHandler(ProjectingListener<?> listener, String commentToken, SharedStrings sharedStrings, StylesTable styles,
+            boolean date1904, boolean typed) {
+        this.listener = listener;
+        this.commentToken = commentToken;
+        this.sharedStrings = sharedStrings;
+        this.styles = styles;
+        this.date1904 = date1904;
+        this.typed = typed;
+    }
+
+    @Override
+    public void startDocument() {
+        readingSubRecord = false;
+        nextRowNum = 0;
+    }
+
+    @Override
+    public void endDocument() throws SAXException {
+        // if reading a sub record, close it
+        if (readingSubRecord) {
+            issue(this::closeSubRecord);
+        }
+    }
+
+    @Override
+    public void startElement(String uri, String localName, String qName, Attributes attributes) throws SAXException {
+        switch (localName) {
+            case "row" -> startRow(attributes.getValue("r"));
+            case "c" -> startCell(attributes.getValue("r"), attributes.getValue("t"), attributes.getValue("s"));
+            case "v" -> {
+                value = true;
+                collecting = valueText;
+            }
+            case "f" -> {
+                // data table cells are not treated as formulas by the workbook model
+                formula = !"dataTable".equals(attributes.getValue("t"));
+                collecting = formulaText;
+            }
+            case "is" -> inlineString = true;
+            case "rPh" -> phonetic = true;
+            case "t" -> {
+                if (inlineString && !phonetic) {
+                    collecting = text;
+                }
+            }
+            default -> {
+                // nothing to track
+            }
+        }
+    }
+
+    @Override
+    public void endElement(String uri, String localName, String qName) throws SAXException {
+        switch (localName) {
+            case "row" -> {
+                issue(this::endRow);
+                if (listener.isDone()) {
+                    throw new Stop();
+                }
+            }
+            case "c" -> issue(this::endCell);
+            case "v", "f", "t" -> collecting = null;
+            case "is" -> inlineString = false;
+            case "rPh" -> phonetic = false;
+            default -> {
+                // nothing to track
+            }
+        }
+    }
+
+    @Override
+    public void characters(char[] ch, int start, int length) {
+        if (collecting != null) {
+            collecting.append(ch, start, length);
+        }
+    }
+
+    private void startRow(String ref) throws SAXException {
+        rowNum = ref != null ? Integer.parseInt(ref) - 1 : nextRowNum;
+        // missing rows are empty rows, which end the current sub record
+        if (rowNum > nextRowNum && readingSubRecord) {
+            issue(this::closeSubRecord);
+        }
+        nextRowNum = rowNum + 1;
+        Arrays.fill(cells, 0, Math.max(lastCellNum, 0), null);
+        Arrays.fill(kinds, 0, Math.max(lastCellNum, 0), TEXT);
+        lastCellNum = 0;
+        column = -1;
+    }
+
+    private void startCell(String ref, String type, String style) {
+        column = ref != null ? columnIndex(ref) : column + 1;
+        this.type = type;
+        this.style = style != null ? Integer.parseInt(style) : -1;
+        formula = false;
+        value = false;
+        inlineString = false;
+        phonetic = false;
+        collecting = null;
+        text.setLength(0);
+        formulaText.setLength(0);
+        valueText.setLength(0);
+    }
+
+    private void endCell() throws ParseException {
+        if (column >= cells.length) {
+            final int length = Math.max(column + 1, cells.length * 2);
+            cells = Arrays.copyOf(cells, length);
+            kinds = Arrays.copyOf(kinds, length);
+            numbers = Arrays.copyOf(numbers, length);
+        }
+        kinds[column] = typed ? cellKind() : TEXT;
+        cells[column] = kinds[column] == TEXT ? cellString() : null;
+        lastCellNum = Math.max(lastCellNum, column + 1);
+    }
+
+    private void endRow() throws ParseException {
+        if (isRowEmpty()) {
+            if (readingSubRecord) {
+                closeSubRecord();
+            }
+        } else {
+            // open a record
+            if (!readingSubRecord) {
+                listener.openRecord(null);
+                readingSubRecord = true;
+            }
+            // parse the row
+            if (!isCommentRow()) {
+                parseRow();
+            }
+        }
+    }
+
+    private void closeSubRecord() throws ParseException {
+        listener.closeRecord();
+        readingSubRecord = false;
+    }
+
+    private boolean isRowEmpty() {
+        return lastCellNum <= 0 || findFirstCell() < 0;
+    }
+
+    private void parseRow() throws ParseException {
+        listener.openRow(rowNum);
+        final int limit = Math.min(lastCellNum, listener.columnLimit());
+        for (int i = 0; i < limit; i++) {
+            if (!listener.selectsColumn(i)) {
+                continue;
+            }
+            switch (kinds[i]) {
+                case NUMBER -> listener.receiveDouble(i, numbers[i]);
+                case DATE -> listener.receiveDate(i, DateUtil.getLocalDateTime(numbers[i], date1904));
+                case BOOLEAN -> listener.receiveBoolean(i, numbers[i] != 0);
+                default -> listener.receive(i, StringUtils.isBlank(cells[i]) ? "" : cells[i]);
+            }
+        }
+        listener.closeRow();
+    }
+
+    private boolean isCommentRow() throws ParseException {
+        // find the value of the first cell
+        final int firstCell = findFirstCell();
+        final String first = firstCell < 0 ? null : cellText(firstCell);
+        if (first != null && first.stripLeading().startsWith(commentToken)) {
+            final String stripped = first.stripLeading().substring(commentToken.length());
+            // merge all the cells in this row into one string
+            final StringBuilder sb = new StringBuilder(stripped);
+            for (int i = 1; i < lastCellNum; i++) {
+                final String cell = cellText(i);
+                if (cell != null) {
+                    sb.append(cell);
+                }
+            }
+
+            // issue comment
+            listener.comment(sb.toString());
+            return true;
+        }
+        return false;
+    }
+
+    private int findFirstCell() {
+        // find the first non blank cell in the row, typed cells are never blank
+        for (int i = 0; i < lastCellNum; i++) {
+            if (kinds[i] != TEXT || !StringUtils.isBlank(cells[i])) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @return the text of a buffered cell, or null when the cell is not present
+     */
+    private String cellText(int i) {
+        return switch (kinds[i]) {
+            case NUMBER -> Double.toString(numbers[i]);
+            case DATE -> dateString(numbers[i]);
+            case BOOLEAN -> CellText.of(numbers[i] != 0);
+            default -> cells[i];
+        };
+    }
+
+    /**
+     * Classifies the current cell for a typed read, keeping numeric values in
+     * {@link #numbers}. Formulas are classified by their cached result.
+     */
+    private byte cellKind() {
+        final String v = value ? valueText.toString() : null;
+        if (type == null || "n".equals(type)) {
+            if (v == null && !formula) {
+                // blank cell
+                return TEXT;
+            }
+            final double d = v == null || v.isEmpty() ? 0.0 : Double.parseDouble(v);
+            numbers[column] = d;
+            return DateUtil.isValidExcelDate(d) && isDateStyle() ? DATE : NUMBER;
+        }
+        if ("b".equals(type)) {
+            numbers[column] = "1".equals(v) ? 1 : 0;
+            return BOOLEAN;
+        }
+        return TEXT;
+    }
+
+    /**
+     * Renders the current cell the way {@code Cell.toString()} renders it in the
+     * workbook model, or by its cached value when typed.
+     */
+    private String cellString() throws ParseException {
+        if (formula && !typed && !formulaText.isEmpty()) {
+            return formulaText.toString();
+        }
+        // shared and array formula members carry no formula text of their own,
+        // they fall back to the cached value
+        final String v = value ? valueText.toString() : null;
+        if (type == null || "n".equals(type)) {
+            return v == null ? "" : numericString(v);
+        }
+        return switch (type) {
+            case "b" -> "1".equals(v) ? "TRUE" : "FALSE";
+            case "e" -> errorString(v);
+            case "s" -> sharedString(v);
+            case "inlineStr" -> new XSSFRichTextString(inlineText(v)).toString();
+            default -> new XSSFRichTextString(v == null ? "" : v).toString();
+        };
+    }
+
+    private String inlineText(String v) {
+        if (!text.isEmpty() || v == null) {
+            return text.toString();
+        }
+        return v;
+    }
+
+    private String numericString(String v) {
+        final double d = v.isEmpty() ? 0.0 : Double.parseDouble(v);
+        if (DateUtil.isValidExcelDate(d) && isDateStyle()) {
+            return dateString(d);
+        }
+        return Double.toString(d);
+    }
+
+    private String dateString(double d) {
+        if (dateFormat == null) {
+            dateFormat = CellText.dateFormat();
+        }
+        return dateFormat.format(DateUtil.getJavaDate(d, date1904));
+    }
+
+    private boolean isDateStyle() {
+        if (style < 0 || styles == null || styles.getNumCellStyles() <= 0) {
+            return false;
+        }
+        if (style >= dateStyles.length) {
+            dateStyles = Arrays.copyOf(dateStyles, style + 1);
+        }
+        if (dateStyles[style] == null) {
+            final XSSFCellStyle cellStyle = styles.getStyleAt(style);
+            dateStyles[style] = cellStyle != null && DateUtil.isADateFormat(
+                    new ExcelNumberFormat(cellStyle.getDataFormat(), cellStyle.getDataFormatString()));
+        }
+        return dateStyles[style];
+    }
+
+    private String sharedString(String v) throws ParseException {
+        if (v == null || sharedStrings == null) {
+            return "";
+        }
+        final int index;
+        try {
+            index = Integer.parseInt(v);
+        } catch (NumberFormatException ex) {
+            return "";
+        }
+        try {
+            return sharedStrings.getItemAt(index).toString();
+        } catch (RuntimeException ex) {
+            throw new ParseException("Cannot read shared string " + index + ".", ex);
+        }
+    }
+
+    private String errorString(String v) {
+        if (v == null) {
+            return ErrorEval.getText(0);
+        }
+        try {
+            return ErrorEval.getText(FormulaError.forString(v).getCode());
+        } catch (IllegalArgumentException ex) {
+            return v;
+        }
+    }
+
+    private static int columnIndex(String ref) {
+        int col = 0;
+        for (int i = 0; i < ref.length(); i++) {
+            final char c = ref.charAt(i);
+            if (c < 'A' || c > 'Z') {
+                break;
+            }
+            col = col * 26 + (c - 'A' + 1);
+        }
+        return col - 1;
+    }
+
+    private void issue(ListenerCall call) throws SAXException {
+        try {
+            call.run();
+        } catch (ParseException ex) {
+            throw new SAXException(ex);
+        }
+    }
+
+    /**
+     * Ends the parse of a sheet once the listener has reached its limits.
+     */
+    static final class Stop extends SAXException {
+
+        private static final long serialVersionUID = 1L;
+
+        Stop() {
+            super("Read limit reached.");
+        }
+
+    }
+
+    @FunctionalInterface
+    private interface ListenerCall {
+        void run() throws ParseException;
+    }
+
+}
@@ -15,90 +15,390 @@
  */
 package org.fpgabros.fmt.spec;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.xml.parsers.ParserConfigurationException;
 
 import org.apache.commons.lang3.StringUtils;
 import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellType;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.ss.usermodel.FormulaError;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.SharedStrings;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.xmlbeans.XmlException;
 import org.fpgabros.fmt.exception.ParseException;
 import org.fpgabros.fmt.model.Element;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.CTWorkbook;
+import org.openxmlformats.schemas.spreadsheetml.x2006.main.WorkbookDocument;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
 
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+/**
+ * Reads XLSX workbooks. By default cells are received as the text
+ * {@code Cell.toString()} gives; a typed spec hands numbers, booleans and
+ * dates to the listener as such, and formula cells as their cached result.
+ * <p>
+ * When streaming, a shared strings table larger than the mapped strings
+ * threshold is kept in memory mapped temporary files instead of on the heap.
+ */
 @Data
 @EqualsAndHashCode(callSuper = true)
 public class XLSXSpec extends Spec {
 
     private final String commentToken;
+    private final boolean streaming;
+    private final boolean typed;
+    // size of the shared strings part above which it is kept off the heap
+    private final long mappedStringsThreshold;
+
+    /**
+     * Shared strings parts of up to 64 MB are loaded onto the heap.
+     */
+    public static final long DEFAULT_MAPPED_STRINGS_THRESHOLD = 64L * 1024 * 1024;
 
     public XLSXSpec() {
         this(";");
     }
 
     public XLSXSpec(final String commentToken) {
+        this(commentToken, false);
+    }
+
+    public XLSXSpec(final String commentToken, final boolean streaming) {
+        this(commentToken, streaming, false);
+    }
+
+    public XLSXSpec(final String commentToken, final boolean streaming, final boolean typed) {
+        this(commentToken, streaming, typed, DEFAULT_MAPPED_STRINGS_THRESHOLD);
+    }
+
+    /**
+     * @param mappedStringsThreshold the uncompressed size of the shared
+     *                               strings part above which the strings are
+     *                               kept in mapped files, when streaming
+     */
+    public XLSXSpec(final String commentToken, final boolean streaming, final boolean typed,
+            final long mappedStringsThreshold) {
         super();
         this.commentToken = commentToken;
+        this.streaming = streaming;
+        this.typed = typed;
+        this.mappedStringsThreshold = mappedStringsThreshold;
+    }
+
+    @Override
+    protected <T> T parse(final File file, final ParseListener<T> listener) throws ParseException {
+        return parse(file, PrimitiveParseListener.of(listener), ReadOptions.ALL);
     }
 
     @Override
-    public Element read(final File file) throws ParseException {
-        // open the workbook
-        try (Workbook workbook = new XSSFWorkbook(file)) {
+    protected <T> T parse(final File file, final ParseListener<T> listener, final ReadOptions options)
+            throws ParseException {
+        return parse(file, PrimitiveParseListener.of(listener), options);
+    }
+
+    /**
+     * Unselected sheets are skipped; when streaming they are not read at all.
+     */
+    @Override
+    protected <T> T parse(final File file, final PrimitiveParseListener<T> target, final ReadOptions options)
+            throws ParseException {
+        final ProjectingListener<T> listener = new ProjectingListener<>(target, options);
+        try {
+            if (Compression.isGzip(file)) {
+                try (InputStream in = Files.newInputStream(file.toPath())) {
+                    return parseStream(in, file.getName(), listener);
+                }
+            }
+            if (streaming) {
+                // open the package without loading the workbook model
+                try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+                    return parseStreaming(pkg, file.getName(), listener);
+                }
+            }
+            // open the workbook
+            try (Workbook workbook = new XSSFWorkbook(file)) {
+                return parseWorkbook(workbook, file.getName(), listener);
+            }
+        } catch (ParseException ex) {
+            throw ex;
+        } catch (IOException | InvalidFormatException ex) {
+            listener.reset(); // reset parse on failure
+            throw new ParseException(ex);
+        }
+    }
+
+    /**
+     * Reads the workbook from a stream, decompressing gzip input on the fly.
+     * The package is held in memory while it is parsed.
+     */
+    @Override
+    protected <T> T parse(final InputStream in, final String name, final ParseListener<T> listener)
+            throws ParseException {
+        return parseStream(in, name, new ProjectingListener<>(PrimitiveParseListener.of(listener), ReadOptions.ALL));
+    }
+
+    private <T> T parseStream(final InputStream in, final String name, final ProjectingListener<T> listener)
+            throws ParseException {
+        try (InputStream input = Compression.open(in)) {
+            final OPCPackage pkg = OPCPackage.open(input);
+            try {
+                if (streaming) {
+                    return parseStreaming(pkg, name, listener);
+                }
+                return parseWorkbook(new XSSFWorkbook(pkg), name, listener);
+            } finally {
+                // close without saving
+                pkg.revert();
+            }
+        } catch (ParseException ex) {
+            throw ex;
+        } catch (IOException | InvalidFormatException ex) {
+            listener.reset(); // reset parse on failure
+            throw new ParseException(ex);
+        }
+    }
+
+    private <T> T parseWorkbook(final Workbook workbook, final String name, final ProjectingListener<T> listener)
+            throws ParseException {
+        // file opened
+        listener.openFile(name);
+
+        for (final Sheet sheet : workbook) {
+            if (listener.isDone()) {
+                break;
+            }
+            if (listener.getOptions().selectsSheet(sheet.getSheetName())) {
+                parseSheet(sheet, listener);
+            }
+        }
+
+        // close file
+        return listener.closeFile();
+    }
+
+    private <T> T parseStreaming(final OPCPackage pkg, final String name, final ProjectingListener<T> listener)
+            throws ParseException {
+        try (Strings strings = readSharedStrings(pkg)) {
+            final XSSFReader reader = new XSSFReader(pkg);
+            final XLSXSheetHandler handler = new XLSXSheetHandler(listener, commentToken, strings.table(),
+                    reader.getStylesTable(), isDate1904(reader), typed);
+            final XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(handler);
+
             // file opened
-            openFile(file.getName());
+            listener.openFile(name);
 
-            for (final Sheet sheet : workbook) {
-                parseSheet(sheet);
+            final XSSFReader.SheetIterator sheets = reader.getSheetIterator();
+            while (sheets.hasNext() && !listener.isDone()) {
+                try (InputStream sheet = sheets.next()) {
+                    if (listener.getOptions().selectsSheet(sheets.getSheetName())) {
+                        parseSheet(sheet, sheets.getSheetName(), parser, listener);
+                    }
+                }
             }
 
             // close file
-            return closeFile();
-        } catch (IOException | InvalidFormatException ex) {
-            reset(); // reset parse on failure
+            return listener.closeFile();
+        } catch (SAXException ex) {
+            listener.reset(); // reset parse on failure
+            throw ex.getCause() instanceof ParseException pex ? pex : new ParseException(ex);
+        } catch (ParseException ex) {
+            throw ex;
+        } catch (IOException | OpenXML4JException | ParserConfigurationException ex) {
+            listener.reset(); // reset parse on failure
+            throw new ParseException(ex);
+        }
+    }
+
+    /**
+     * Reads the sheets of a workbook concurrently on the common fork join
+     * pool.
+     *
+     * @see #readParallel(File, Executor)
+     */
+    public Element readParallel(final File file) throws ParseException {
+        return readParallel(file, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Reads each sheet of a workbook into its own record on the executor and
+     * assembles the records under the file in workbook order, giving the same
+     * tree as {@link #read(File)}. Sheets are read with the streaming parser
+     * whether or not the spec is streaming. Compressed files are read
+     * serially.
+     */
+    public Element readParallel(final File file, final Executor executor) throws ParseException {
+        final List<CompletableFuture<Element>> sheets = new ArrayList<>();
+        try {
+            if (Compression.isGzip(file)) {
+                return read(file);
+            }
+            try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ); Strings strings = readSharedStrings(pkg)) {
+                try {
+                    // shared by the sheets, which only read them
+                    final XSSFReader reader = new XSSFReader(pkg);
+                    final SharedStrings sharedStrings = strings.table();
+                    final StylesTable styles = reader.getStylesTable();
+                    final boolean date1904 = isDate1904(reader);
+
+                    final XSSFReader.SheetIterator iterator = reader.getSheetIterator();
+                    while (iterator.hasNext()) {
+                        iterator.next().close();
+                        final String name = iterator.getSheetName();
+                        final PackagePart part = iterator.getSheetPart();
+                        sheets.add(CompletableFuture.supplyAsync(
+                                () -> parseSheet(part, name, sharedStrings, styles, date1904), executor));
+                    }
+
+                    // stitch the sheet records together in workbook order
+                    final ElementBuilder builder = new ElementBuilder();
+                    builder.openFile(file.getName());
+                    for (CompletableFuture<Element> sheet : sheets) {
+                        builder.attach(sheet.join());
+                    }
+                    return builder.closeFile();
+                } finally {
+                    // the sheets read from the package until they finish
+                    CompletableFuture.allOf(sheets.toArray(CompletableFuture[]::new)).handle((r, ex) -> r).join();
+                }
+            }
+        } catch (CompletionException ex) {
+            throw ex.getCause() instanceof UncheckedIOException uex ? asParseException(uex.getCause())
+                    : new ParseException(ex.getCause());
+        } catch (SAXException ex) {
+            throw ex.getCause() instanceof ParseException pex ? pex : new ParseException(ex);
+        } catch (IOException ex) {
+            throw asParseException(ex);
+        } catch (OpenXML4JException ex) {
             throw new ParseException(ex);
         }
     }
 
-    private void parseSheet(final Sheet sheet) throws ParseException {
+    private Element parseSheet(final PackagePart part, final String name, final SharedStrings sharedStrings,
+            final StylesTable styles, final boolean date1904) {
+        final ElementBuilder builder = new ElementBuilder();
+        final ProjectingListener<Element> listener = new ProjectingListener<>(PrimitiveParseListener.of(builder),
+                ReadOptions.ALL);
+        try (InputStream sheet = part.getInputStream()) {
+            final XMLReader parser = XMLHelper.newXMLReader();
+            parser.setContentHandler(
+                    new XLSXSheetHandler(listener, commentToken, sharedStrings, styles, date1904, typed));
+            listener.openFile(null);
+            parseSheet(sheet, name, parser, listener);
+            // the sheet record collected under the file
+            return builder.getStack().peek().getChildren().get(0);
+        } catch (SAXException ex) {
+            throw new UncheckedIOException(
+                    ex.getCause() instanceof ParseException pex ? pex : new ParseException(ex));
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        } catch (ParserConfigurationException ex) {
+            throw new UncheckedIOException(new ParseException(ex));
+        }
+    }
+
+    private void parseSheet(final InputStream sheet, final String name, final XMLReader parser,
+            final ProjectingListener<?> listener) throws IOException, SAXException {
         // open record for this sheet
-        openRecord(sheet.getSheetName());
+        listener.openRecord(name);
+        try {
+            parser.parse(new InputSource(sheet));
+        } catch (XLSXSheetHandler.Stop ex) {
+            // a limit was reached, the rest of the sheet is not read
+        }
+        // close sheet record
+        listener.closeRecord();
+    }
+
+    private static ParseException asParseException(final IOException ex) {
+        return ex instanceof ParseException pex ? pex : new ParseException(ex);
+    }
+
+    private Strings readSharedStrings(final OPCPackage pkg) throws IOException, SAXException {
+        final List<PackagePart> parts = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+        if (parts.isEmpty()) {
+            return new Strings(null);
+        }
+        final PackagePart part = parts.get(0);
+        if (part.getSize() > mappedStringsThreshold) {
+            return new Strings(new MappedSharedStrings(part));
+        }
+        // phonetic runs are left out, as they are by the workbook model
+        return new Strings(new ReadOnlySharedStringsTable(part, false));
+    }
+
+    private boolean isDate1904(final XSSFReader reader) throws IOException, OpenXML4JException {
+        try (InputStream in = reader.getWorkbookData()) {
+            final CTWorkbook workbook = WorkbookDocument.Factory.parse(in).getWorkbook();
+            return workbook.isSetWorkbookPr() && workbook.getWorkbookPr().getDate1904();
+        } catch (XmlException ex) {
+            throw new InvalidFormatException(ex.getMessage());
+        }
+    }
+
+    private void parseSheet(final Sheet sheet, final ProjectingListener<?> listener) throws ParseException {
+        // open record for this sheet
+        listener.openRecord(sheet.getSheetName());
         boolean readingSubRecord = false;
         final int lastRowNum = sheet.getLastRowNum();
         // for each row
-        for (int r = 0; r <= lastRowNum; r++) {
+        for (int r = 0; r <= lastRowNum && !listener.isDone(); r++) {
             Row row = sheet.getRow(r);
             if (isRowEmpty(row)) {
                 if (readingSubRecord) {
-                    closeRecord();
+                    listener.closeRecord();
                 }
                 readingSubRecord = false;
             } else {
                 // open a record
                 if (!readingSubRecord) {
-                    openRecord(null);
+                    listener.openRecord(null);
                     readingSubRecord = true;
                 }
                 // parse the row
-                if (!isCommentRow(row)) {
-                    parseRow(row);
+                if (!isCommentRow(row, listener)) {
+                    parseRow(row, listener);
                 }
             }
         }
 
         // if reading a sub record, close it
         if (readingSubRecord) {
-            closeRecord();
+            listener.closeRecord();
         }
 
         // close sheet record
-        closeRecord();
+        listener.closeRecord();
     }
 
     private boolean isRowEmpty(final Row row) {
@@ -108,20 +408,29 @@ public class XLSXSpec extends Spec {
         return findFirstCell(row) == null;
     }
 
-    private void parseRow(Row row) throws ParseException {
+    private void parseRow(final Row row, final ProjectingListener<?> listener) throws ParseException {
         // open row
-        openRow(row.getRowNum());
+        listener.openRow(row.getRowNum());
         // get the index of the last cell
-        final int lastCellNum = row.getLastCellNum();
+        final int lastCellNum = Math.min(row.getLastCellNum(), listener.columnLimit());
         for (int i = 0; i < lastCellNum; i++) {
+            if (!listener.selectsColumn(i)) {
+                continue;
+            }
             final Cell cell = row.getCell(i);
-            receive(i, isBlankCell(cell) ? "" : cell.toString());
+            if (isBlankCell(cell)) {
+                listener.receive(i, "");
+            } else if (typed) {
+                receiveTyped(i, cell, listener);
+            } else {
+                listener.receive(i, cellText(cell));
+            }
         }
         // close row
-        closeRow();
+        listener.closeRow();
     }
 
-    private boolean isCommentRow(final Row row) throws ParseException {
+    private boolean isCommentRow(final Row row, final PrimitiveParseListener<?> listener) throws ParseException {
         // find the value of the first cell
         final String first = findFirstCell(row);
         if (first != null && first.stripLeading().startsWith(commentToken)) {
@@ -132,12 +441,12 @@ public class XLSXSpec extends Spec {
             for (int i = 1; i < row.getLastCellNum(); i++) {
                 final Cell cell = row.getCell(i);
                 if (cell != null) {
-                    sb.append(cell.toString());
+                    sb.append(cellText(cell));
                 }
             }
 
             // issue comment
-            comment(sb.toString());
+            listener.comment(sb.toString());
             return true;
         }
         return false;
@@ -147,14 +456,72 @@ public class XLSXSpec extends Spec {
         // find the first non blank cell in the row
         for (final Cell cell : row) {
             if (!isBlankCell(cell)) {
-                return cell.toString();
+                return cellText(cell);
             }
         }
         return null;
     }
 
+    private void receiveTyped(final int index, final Cell cell, final PrimitiveParseListener<?> listener)
+            throws ParseException {
+        switch (resultType(cell)) {
+            case NUMERIC -> {
+                if (DateUtil.isCellDateFormatted(cell)) {
+                    listener.receiveDate(index, cell.getLocalDateTimeCellValue());
+                } else {
+                    listener.receiveDouble(index, cell.getNumericCellValue());
+                }
+            }
+            case BOOLEAN -> listener.receiveBoolean(index, cell.getBooleanCellValue());
+            default -> listener.receive(index, cellText(cell));
+        }
+    }
+
+    private String cellText(final Cell cell) {
+        if (!typed) {
+            return cell.toString();
+        }
+        return switch (resultType(cell)) {
+            case NUMERIC -> DateUtil.isCellDateFormatted(cell)
+                    ? CellText.of(cell.getLocalDateTimeCellValue())
+                    : Double.toString(cell.getNumericCellValue());
+            case BOOLEAN -> CellText.of(cell.getBooleanCellValue());
+            case ERROR -> FormulaError.forInt(cell.getErrorCellValue()).getString();
+            case STRING -> cell.getStringCellValue();
+            default -> "";
+        };
+    }
+
+    private CellType resultType(final Cell cell) {
+        // formulas are read through their cached result when typed
+        final CellType type = cell.getCellType();
+        return type == CellType.FORMULA ? cell.getCachedFormulaResultType() : type;
+    }
+
     private boolean isBlankCell(final Cell cell) {
-        return cell == null || cell.getCellType() == CellType.BLANK || StringUtils.isBlank(cell.toString());
+        if (cell == null) {
+            return true;
+        }
+        // numbers, booleans and errors always have text
+        return switch (cell.getCellType()) {
+            case BLANK -> true;
+            case NUMERIC, BOOLEAN, ERROR -> false;
+            default -> StringUtils.isBlank(cellText(cell));
+        };
+    }
+
+    /**
+     * The shared strings of a package, released once its sheets are read.
+     */
+    private record Strings(SharedStrings table) implements Closeable {
+
+        @Override
+        public void close() throws IOException {
+            if (table instanceof Closeable closeable) {
+                closeable.close();
+            }
+        }
+
     }
 
 }
@@ -0,0 +1,105 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.ingest;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.fpgabros.fmt.model.Element;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class IngestJobTest {
+
+    @Test
+    void testIngest(@TempDir Path dir) {
+        try {
+            final Path input = Files.createDirectory(dir.resolve("in"));
+            Files.writeString(input.resolve("a.csv"), "1,2\n3,4\n");
+            Files.writeString(input.resolve("b.txt"), "5,6\n");
+            Files.writeString(input.resolve("notes.md"), "not ingested");
+            Files.write(input.resolve("broken.xlsx"), "not a workbook".getBytes(StandardCharsets.UTF_8));
+            Files.createDirectory(input.resolve("nested"));
+            Files.writeString(input.resolve("nested/c.csv"), "7,8\n");
+
+            final IngestProperties properties = new IngestProperties();
+            properties.setDirectory(input);
+            properties.setCheckpoint(dir.resolve("checkpoint"));
+            properties.setWorkers(2);
+            properties.setQueueCapacity(1);
+
+            final Map<Path, Element> received = new ConcurrentHashMap<>();
+            IngestSummary summary = new IngestJob(properties, received::put).run();
+            Assertions.assertEquals(3, summary.ingested());
+            Assertions.assertEquals(0, summary.skipped());
+            Assertions.assertEquals(1, summary.failed());
+            Assertions.assertEquals(2, received.get(input.resolve("a.csv")).getChildren().size());
+
+            // a restart only retries the file that failed
+            received.clear();
+            summary = new IngestJob(properties, received::put).run();
+            Assertions.assertEquals(0, summary.ingested());
+            Assertions.assertEquals(3, summary.skipped());
+            Assertions.assertEquals(1, summary.failed());
+
+            // a changed file is ingested again
+            Files.writeString(input.resolve("b.txt"), "5,6\n9,10\n");
+            Files.setLastModifiedTime(input.resolve("b.txt"), FileTime.fromMillis(0));
+            summary = new IngestJob(properties, received::put).run();
+            Assertions.assertEquals(1, summary.ingested());
+            Assertions.assertEquals(2, received.get(input.resolve("b.txt")).getChildren().size());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testSinkFailure(@TempDir Path dir) {
+        try {
+            final Path input = Files.createDirectory(dir.resolve("in"));
+            for (int i = 0; i < 8; i++) {
+                Files.writeString(input.resolve(i + ".csv"), i + "\n");
+            }
+            final IngestProperties properties = new IngestProperties();
+            properties.setDirectory(input);
+            properties.setCheckpoint(dir.resolve("checkpoint"));
+            properties.setWorkers(1);
+            properties.setQueueCapacity(1);
+
+            // files reach the sink in order with a single worker
+            final IngestSink failing = (file, element) -> {
+                if (file.endsWith("3.csv")) {
+                    throw new IOException("Sink is down.");
+                }
+            };
+            Assertions.assertThrows(IOException.class, () -> new IngestJob(properties, failing).run());
+
+            final IngestSummary summary = new IngestJob(properties, (file, element) -> {
+            }).run();
+            Assertions.assertEquals(3, summary.skipped());
+            Assertions.assertEquals(5, summary.ingested());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.File;
+import java.nio.file.Path;
+
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.spec.TextSpec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class BinaryElementTest {
+
+    @Test
+    void testRoundTrip(@TempDir Path dir) {
+        try {
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            Element element = new TextSpec().read(file);
+
+            // written from a tree
+            Path tree = dir.resolve("tree.bin");
+            try (BinaryElementWriter writer = new BinaryElementWriter(tree)) {
+                writer.write(element);
+            }
+            Assertions.assertEquals(element, BinaryElementReader.read(tree));
+
+            // written while parsing
+            Path parsed = dir.resolve("parsed.bin");
+            try (BinaryElementWriter writer = new BinaryElementWriter(parsed)) {
+                new TextSpec().read(file, writer);
+            }
+            Assertions.assertEquals(element, BinaryElementReader.read(parsed));
+
+            // folded single records
+            File single = new File("src/test/resources/plain/comment.csv");
+            try (BinaryElementWriter writer = new BinaryElementWriter(parsed)) {
+                new TextSpec().read(single, writer);
+            }
+            Assertions.assertEquals(new TextSpec().read(single), BinaryElementReader.read(parsed));
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testMapped(@TempDir Path dir) {
+        try {
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            Element element = new TextSpec().read(file);
+            Path parsed = dir.resolve("parsed.bin");
+            try (BinaryElementWriter writer = new BinaryElementWriter(parsed)) {
+                new TextSpec().read(file, writer);
+            }
+
+            MappedElement root = BinaryElementReader.map(parsed);
+            Assertions.assertEquals(element.getChildren().size(), root.getChildCount());
+            MappedElement record = root.getChild("1");
+            Assertions.assertEquals(element.getChildren().get(1).getValue(), record.getValue());
+            Assertions.assertEquals(element.getChildren().get(1), record.toElement());
+            Assertions.assertEquals(element.find("1/3/2").getValue(), record.getChild(3).getChild("2").getValue());
+            Assertions.assertEquals(element, root.toElement());
+            System.out.println(root.getChildren());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+}
@@ -0,0 +1,79 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.io;
+
+import java.io.File;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.spec.TextSpec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class ElementWriterTest {
+
+    @Test
+    void testDump() {
+        Element element = new Element("root", "a", List.of(), List.of(
+                new Element(0, "b"),
+                new Element("1", null, List.of(), List.of(new Element(0, "c")))));
+        Assertions.assertEquals("E(root)=a\n  E(0)=b\n  E(1)\n    E(0)=c\n", element.dump(2));
+    }
+
+    @Test
+    void testJson() {
+        try {
+            Element element = new Element("root", "a\"b", List.of(), List.of(
+                    new Element(0, "x\ny"),
+                    new Element("1", null, List.of(), List.of(new Element(0)))));
+            StringBuilder sb = new StringBuilder();
+            new JsonElementWriter(sb).write(element);
+            Assertions.assertEquals("{\"id\":\"root\",\"value\":\"a\\\"b\",\"children\":[{\"id\":\"0\",\"value\":\"x\\ny\"},"
+                    + "{\"id\":\"1\",\"children\":[{\"id\":\"0\"}]}]}", sb.toString());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testTextRoundTrip(@TempDir Path dir) {
+        List<TextSpec> specs = List.of(new TextSpec(),
+                new TextSpec(StandardCharsets.UTF_8, ",", ";", false));
+        try (var files = Files.list(Path.of("src/test/resources/plain"))) {
+            for (Path file : files.toList()) {
+                for (TextSpec spec : specs) {
+                    Element element = spec.read(file.toFile());
+                    Path out = dir.resolve(file.getFileName());
+                    try (Writer writer = Files.newBufferedWriter(out);
+                            TextElementWriter text = new TextElementWriter(writer, spec)) {
+                        text.write(element);
+                    }
+                    Element reread = spec.read(out.toFile());
+                    reread.setId(element.getId());
+                    Assertions.assertEquals(element, reread, file + " multipart=" + spec.isMultipart());
+                }
+            }
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.model;
+
+import java.io.File;
+import java.util.List;
+import java.util.ListIterator;
+
+import org.fpgabros.fmt.spec.TextSpec;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ElementTest {
+
+    @Test
+    void testFind() {
+        try {
+            Element element = new TextSpec().read(new File("src/test/resources/plain/multirecord.csv"));
+            Assertions.assertEquals("B", element.find("0/0/1").getValue());
+            Assertions.assertEquals("3", element.find("/1/3/2").getValue());
+            Assertions.assertNull(element.find("0/9"));
+
+            // column 2 of every row of every record
+            List<Element> column = element.findAll("*/*/2");
+            Assertions.assertEquals(List.of("C", "3", "4", "5", "C", "1", "2", "3"),
+                    column.stream().map(Element::getValue).toList());
+            Assertions.assertEquals(List.of("1", "2", "1", "2"),
+                    element.findAll("*/1..2/0").stream().map(Element::getValue).toList());
+            Assertions.assertEquals(List.of("C", "C"), element.findAll("*/..0/2").stream().map(Element::getValue).toList());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testIndex() {
+        Element element = new Element("root");
+        for (int i = 0; i < 100; i++) {
+            element.getChildren().add(new Element(i, "v" + i));
+        }
+        Assertions.assertEquals("v42", element.getChild("42").getValue());
+
+        // the index follows changes to the children
+        element.getChildren().add(new Element(100, "v100"));
+        Assertions.assertEquals("v100", element.getChild("100").getValue());
+        element.getChildren().set(42, new Element(42, "replaced"));
+        Assertions.assertEquals("replaced", element.getChild("42").getValue());
+        Assertions.assertEquals(List.of("v5", "v6", "v7"),
+                element.findAll("5..7").stream().map(Element::getValue).toList());
+        element.getChildren().subList(40, 50).set(3, new Element(43, "through a sub list"));
+        Assertions.assertEquals("through a sub list", element.getChild("43").getValue());
+
+        // ranges keep tree order when ids are out of order
+        element.getChildren().add(0, new Element(101, "v101"));
+        Assertions.assertEquals(List.of("v101", "v99", "v100"),
+                element.findAll("99..101").stream().map(Element::getValue).toList());
+
+        element.setChildren(List.of(new Element("a")));
+        Assertions.assertNull(element.getChild("42"));
+        Assertions.assertNotNull(element.getChild("a"));
+    }
+
+    @Test
+    void testReplaceChildren() {
+        Element element = new Element("root");
+        for (int i = 0; i < 20; i++) {
+            element.getChildren().add(new Element(i, "v" + i));
+        }
+        Assertions.assertEquals("v3", element.getChild("3").getValue());
+
+        // replacing through an iterator keeps it usable and the index fresh
+        final ListIterator<Element> it = element.getChildren().listIterator();
+        while (it.hasNext()) {
+            final Element child = it.next();
+            it.set(new Element(child.getId(), "set" + child.getId()));
+        }
+        Assertions.assertEquals("set3", element.getChild("3").getValue());
+
+        final ListIterator<Element> sub = element.getChildren().subList(5, 10).listIterator();
+        while (sub.hasNext()) {
+            final Element child = sub.next();
+            sub.set(new Element(child.getId(), "sub" + child.getId()));
+        }
+        Assertions.assertEquals("sub7", element.getChild("7").getValue());
+
+        element.getChildren().replaceAll(child -> new Element(child.getId(), "all" + child.getId()));
+        Assertions.assertEquals("all3", element.getChild("3").getValue());
+        Assertions.assertEquals("all7", element.getChild("7").getValue());
+    }
+
+    @Test
+    void testSizeOfLazyValues() {
+        final CharSequence unread = new CharSequence() {
+            @Override
+            public int length() {
+                return 10;
+            }
+
+            @Override
+            public char charAt(int index) {
+                throw new AssertionError("read while estimating");
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                throw new AssertionError("read while estimating");
+            }
+
+            @Override
+            public String toString() {
+                throw new AssertionError("read while estimating");
+            }
+        };
+        Element element = new Element("root");
+        final Element text = new Element("text");
+        text.setValueSequence(unread);
+        final Element number = new Element("number");
+        number.setValueSequence(new NumberValue(1.5));
+        element.getChildren().add(text);
+        element.getChildren().add(number);
+
+        Assertions.assertTrue(ElementSize.estimate(element) > ElementSize.estimate(new Element("root")));
+        // estimating leaves the values as they were
+        Assertions.assertSame(unread, text.getValueSequence());
+    }
+
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.model.Element;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CachingSpecTest {
+
+    @Test
+    void testCache(@TempDir Path dir) {
+        try {
+            Path file = dir.resolve("multirecord.csv");
+            Files.copy(Path.of("src/test/resources/plain/multirecord.csv"), file);
+            CachingSpec spec = new CachingSpec(new TextSpec(), 1 << 20);
+
+            Element first = spec.read(file.toFile());
+            Assertions.assertSame(first, spec.read(file.toFile()));
+            Assertions.assertEquals(1, spec.getStats().hits());
+            Assertions.assertEquals(1, spec.getStats().misses());
+
+            // a modified file is parsed again
+            Files.setLastModifiedTime(file, FileTime.fromMillis(Files.getLastModifiedTime(file).toMillis() + 1000));
+            Assertions.assertNotSame(first, spec.read(file.toFile()));
+            Assertions.assertEquals(2, spec.getStats().misses());
+
+            // a second file pushes the first out of a cache that only fits one
+            Path other = dir.resolve("tails.csv");
+            Files.copy(Path.of("src/test/resources/plain/tails.csv"), other);
+            CachingSpec small = new CachingSpec(new TextSpec(), spec.getStats().bytes());
+            small.read(file.toFile());
+            small.read(other.toFile());
+            Assertions.assertEquals(1, small.getStats().evictions());
+            Assertions.assertEquals(1, small.getStats().entries());
+            System.out.println(spec.getStats());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testSingleParse() {
+        AtomicInteger parses = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        TextSpec slow = new TextSpec() {
+            @Override
+            protected <T> T parse(File file, ParseListener<T> listener) throws ParseException {
+                parses.incrementAndGet();
+                started.countDown();
+                try {
+                    Thread.sleep(200);
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+                return super.parse(file, listener);
+            }
+        };
+        CachingSpec spec = new CachingSpec(slow, 1 << 20);
+        File file = new File("src/test/resources/plain/multirecord.csv");
+        try {
+            List<Thread> threads = new ArrayList<>();
+            List<Element> results = new ArrayList<>();
+            threads.add(Thread.ofVirtual().start(() -> read(spec, file, results)));
+            started.await();
+            for (int i = 0; i < 4; i++) {
+                threads.add(Thread.ofVirtual().start(() -> read(spec, file, results)));
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            Assertions.assertEquals(1, parses.get());
+            Assertions.assertEquals(5, results.size());
+            results.forEach(e -> Assertions.assertSame(results.get(0), e));
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    private static void read(CachingSpec spec, File file, List<Element> results) {
+        try {
+            Element element = spec.read(file);
+            synchronized (results) {
+                results.add(element);
+            }
+        } catch (ParseException ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+}
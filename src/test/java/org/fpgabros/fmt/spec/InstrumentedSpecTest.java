@@ -0,0 +1,141 @@
+/*
+ * Copyright © 2025 Talon Holton (jared.holton@fpgabros.org)
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.fpgabros.fmt.spec;
+
+import java.io.File;
+
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.metrics.MicrometerParseMetrics;
+import org.fpgabros.fmt.model.Element;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+
+class InstrumentedSpecTest {
+
+    @Test
+    void testMetrics() {
+        try {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            InstrumentedSpec spec = new InstrumentedSpec(new TextSpec(), new MicrometerParseMetrics(registry));
+
+            Element element = spec.read(file);
+            Assertions.assertEquals(new TextSpec().read(file), element);
+            Assertions.assertEquals(1, registry.get("fmt.parse.files").counter().count());
+            Assertions.assertTrue(registry.get("fmt.parse.rows").counter().count() > 0);
+            Assertions.assertTrue(registry.get("fmt.parse.cells").counter().count() > 0);
+            Assertions.assertEquals(file.length(), registry.get("fmt.parse.bytes").counter().count());
+            Assertions.assertEquals(1, registry.get("fmt.parse.duration").timer().count());
+            Assertions.assertTrue(registry.get("fmt.parse.depth").summary().max() >= 3);
+
+            Assertions.assertThrows(ParseException.class, () -> spec.read(new File("missing.csv")));
+            Assertions.assertEquals(1, registry.get("fmt.parse.failures").tag("exception", "NoSuchFileException")
+                    .counter().count());
+            System.out.println(registry.getMetersAsString());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testPrimitive() {
+        try {
+            SimpleMeterRegistry registry = new SimpleMeterRegistry();
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            InstrumentedSpec spec = new InstrumentedSpec(new TextSpec(), new MicrometerParseMetrics(registry));
+
+            // the delegate issues its native events through the instrumented spec
+            CountingListener direct = new CountingListener();
+            Element expected = new TextSpec().read(file, direct);
+            CountingListener instrumented = new CountingListener();
+            Assertions.assertEquals(expected, spec.read(file, instrumented));
+            Assertions.assertTrue(direct.arrays > 0);
+            Assertions.assertEquals(direct.arrays, instrumented.arrays);
+
+            Assertions.assertEquals(1, registry.get("fmt.parse.files").counter().count());
+            Assertions.assertEquals(direct.arrays + direct.sequences,
+                    registry.get("fmt.parse.cells").counter().count());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    /**
+     * Builds the tree, counting the values received in a reused array.
+     */
+    private static final class CountingListener implements PrimitiveParseListener<Element> {
+
+        private final PrimitiveParseListener<Element> builder = PrimitiveParseListener.of(new ElementBuilder());
+        private int arrays;
+        private int sequences;
+
+        @Override
+        public void openFile(String id) throws ParseException {
+            builder.openFile(id);
+        }
+
+        @Override
+        public void openRecord(String id) throws ParseException {
+            builder.openRecord(id);
+        }
+
+        @Override
+        public void openRow(int index) throws ParseException {
+            builder.openRow(index);
+        }
+
+        @Override
+        public void receive(int index, CharSequence value) throws ParseException {
+            sequences++;
+            builder.receive(index, value);
+        }
+
+        @Override
+        public void receive(int index, char[] chars, int offset, int length) throws ParseException {
+            arrays++;
+            builder.receive(index, chars, offset, length);
+        }
+
+        @Override
+        public void comment(String value) throws ParseException {
+            builder.comment(value);
+        }
+
+        @Override
+        public void closeRow() throws ParseException {
+            builder.closeRow();
+        }
+
+        @Override
+        public void closeRecord() throws ParseException {
+            builder.closeRecord();
+        }
+
+        @Override
+        public Element closeFile() throws ParseException {
+            return builder.closeFile();
+        }
+
+        @Override
+        public void reset() throws ParseException {
+            builder.reset();
+        }
+
+    }
+
+}
@@ -15,11 +15,36 @@
  */
 package org.fpgabros.fmt.spec;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
 
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.io.SpillFile;
+import org.fpgabros.fmt.io.SpilledElement;
+import org.fpgabros.fmt.io.SpillingElementBuilder;
+import org.fpgabros.fmt.io.TextElementWriter;
 import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.model.ElementSize;
+import org.fpgabros.fmt.model.ElementTable;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class TextSpecTest {
 
@@ -56,4 +81,464 @@ class TextSpecTest {
         }
     }
 
+    @Test
+    void testStream() {
+        File file = new File("src/test/resources/plain/multirecord.csv");
+        try (Stream<Element> stream = new TextSpec().stream(file)) {
+            List<Element> records = stream.toList();
+            Element element = new TextSpec().read(file);
+            Assertions.assertEquals(element.getChildren().size(), records.size());
+            for (int i = 0; i < records.size(); i++) {
+                Assertions.assertEquals(element.getChildren().get(i), records.get(i));
+            }
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testTable() {
+        try {
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            ElementTable table = new TextSpec().readTable(file);
+            Assertions.assertNotNull(table);
+            Assertions.assertEquals(new TextSpec().read(file), table.toElement());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testParallel() {
+        try {
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            TextSpec spec = new TextSpec();
+            // tiny chunks so the file is split at every blank line
+            Element element = spec.readParallel(file, ForkJoinPool.commonPool(), 16);
+            Assertions.assertEquals(spec.read(file), element);
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testReadAll() {
+        try {
+            TextSpec spec = new TextSpec();
+            List<Path> paths = List.of(Path.of("src/test/resources/plain/comment.csv"),
+                    Path.of("src/test/resources/plain/multirecord.csv"),
+                    Path.of("src/test/resources/plain/tails.csv"));
+            Map<Path, Element> elements = spec.readAll(paths, 2);
+            Assertions.assertEquals(paths, List.copyOf(elements.keySet()));
+            for (Path path : paths) {
+                Assertions.assertEquals(spec.read(path.toFile()), elements.get(path));
+            }
+
+            // a missing file fails the batch
+            List<Path> missing = List.of(paths.get(0), Path.of("src/test/resources/plain/missing.csv"));
+            ParseException ex = Assertions.assertThrows(ParseException.class, () -> spec.readAll(missing));
+            Assertions.assertEquals(1, ex.getSuppressed().length);
+            Assertions.assertTrue(ex.getMessage().contains("missing.csv"));
+
+            // an interrupted batch fails without waiting for the files
+            Thread.currentThread().interrupt();
+            Assertions.assertThrows(ParseException.class, () -> spec.readAll(paths, 1));
+            Assertions.assertTrue(Thread.interrupted());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testLazy() {
+        try {
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            Element element = new TextSpec(StandardCharsets.UTF_8, ",", ";", true, true).read(file);
+            Element cell = element.find("1/1/0");
+            // not decoded until asked for
+            Assertions.assertFalse(cell.getValueSequence() instanceof String);
+            Assertions.assertEquals("1", cell.getValue());
+            // decoded once, reading leaves the element untouched
+            Assertions.assertSame(cell.getValue(), cell.getValue());
+            Assertions.assertFalse(cell.getValueSequence() instanceof String);
+            Assertions.assertEquals(1, cell.getValueSequence().length());
+            Assertions.assertEquals('1', cell.getValueSequence().charAt(0));
+            Assertions.assertEquals(new TextSpec().read(file), element);
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testReadOptions() {
+        try {
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            TextSpec spec = new TextSpec();
+            Element full = spec.read(file);
+
+            Element projected = spec.read(file, ReadOptions.builder().columns(0, 2).build());
+            Element row = projected.find("1/1");
+            Assertions.assertEquals(2, row.getChildren().size());
+            Assertions.assertEquals(full.find("1/1/2"), row.getChild("2"));
+            Assertions.assertNull(row.getChild("1"));
+
+            // a single record is folded into the file
+            Element first = spec.read(file, ReadOptions.builder().maxRecords(1).build());
+            Assertions.assertEquals(full.getChildren().get(0).getChildren(), first.getChildren());
+
+            Element rows = spec.read(file, ReadOptions.builder().maxRows(2).build());
+            Assertions.assertEquals(full.getChildren().get(0).getChildren().subList(0, 2), rows.getChildren());
+
+            Element filtered = spec.read(file, ReadOptions.builder()
+                    .recordFilter(rec -> rec.getValue() != null && rec.getValue().contains("Record 2")).build());
+            Assertions.assertEquals(full.getChildren().get(1).getValue(), filtered.getValue());
+            Assertions.assertEquals(full.getChildren().get(1).getChildren(), filtered.getChildren());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testPrimitiveListener() {
+        try {
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            TextSpec spec = new TextSpec();
+            Element full = spec.read(file);
+
+            List<String> values = new ArrayList<>();
+            PrimitiveParseListener<List<String>> listener = new PrimitiveParseListener<>() {
+                public void openFile(String id) {
+                }
+                public void openRecord(String id) {
+                }
+                public void openRow(int index) {
+                    Assertions.assertEquals(NO_INDEX, index);
+                }
+                public void receive(int index, CharSequence value) {
+                    values.add(index + "=" + value);
+                }
+                public void receive(int index, char[] chars, int offset, int length) {
+                    values.add(index + "=" + new String(chars, offset, length));
+                }
+                public void comment(String value) {
+                }
+                public void closeRow() {
+                }
+                public void closeRecord() {
+                }
+                public List<String> closeFile() {
+                    return values;
+                }
+                public void reset() {
+                    values.clear();
+                }
+            };
+            Assertions.assertEquals("-1=A", spec.read(file, listener).get(0));
+            Assertions.assertEquals(full.findAll("*/*/*").size(), values.size());
+
+            // projected columns keep their index
+            values.clear();
+            spec.read(file, listener, ReadOptions.builder().columns(2).build());
+            Assertions.assertEquals(List.of("2=C", "2=3"), values.subList(0, 2));
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testFollow(@TempDir Path dir) {
+        Path file = dir.resolve("follow.csv");
+        try (TextFollower follower = new TextSpec().follow(file)) {
+            Files.writeString(file, "; Name = Record 1\nA,B\n1,2");
+            Assertions.assertTrue(follower.poll().isEmpty());
+
+            // the record completes with the blank line after it
+            Files.writeString(file, "\n2,3\n\n; Name = Rec", StandardOpenOption.APPEND);
+            List<Element> records = follower.poll();
+            Assertions.assertEquals(1, records.size());
+            Assertions.assertEquals(" Name = Record 1", records.get(0).getValue());
+            Assertions.assertEquals(3, records.get(0).getChildren().size());
+            Assertions.assertEquals("2", records.get(0).find("1/1").getValue());
+
+            Files.writeString(file, "ord 2\nC\nD\n\n", StandardOpenOption.APPEND);
+            records = follower.await(Duration.ofSeconds(5));
+            Assertions.assertEquals(1, records.size());
+            Assertions.assertEquals("1", records.get(0).getId());
+            Assertions.assertEquals(" Name = Record 2", records.get(0).getValue());
+            Assertions.assertTrue(follower.await(Duration.ofMillis(50)).isEmpty());
+
+            // truncated files are read again from the start
+            Files.writeString(file, "X\n\n");
+            records = follower.poll();
+            Assertions.assertEquals(1, records.size());
+            Assertions.assertEquals("0", records.get(0).getId());
+
+            // so are files rewritten in place past the offset read so far
+            Files.writeString(file, "W,1\nW,2\n\n");
+            records = follower.poll();
+            Assertions.assertEquals(1, records.size());
+            Assertions.assertEquals("0", records.get(0).getId());
+            Assertions.assertEquals("2", records.get(0).find("1/1").getValue());
+
+            // a rotated file is finished before the new file is read
+            Files.writeString(file, "Y\n", StandardOpenOption.APPEND);
+            Files.move(file, dir.resolve("follow.csv.1"));
+            Files.writeString(file, "Z\n\n");
+            records = follower.poll();
+            Assertions.assertEquals(List.of("Y", "Z"), records.stream().map(Element::getValue).toList());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testIncremental(@TempDir Path dir) {
+        Path file = dir.resolve("incremental.csv");
+        try {
+            TextSpec spec = new TextSpec();
+            IncrementalReader reader = spec.incremental(file);
+            Files.writeString(file, "; A\n1,2\n3,4\n\n; B\n5,6\n7,8\n\n; C\n9,10\n11,12\n");
+            IncrementalRead read = reader.read();
+            Assertions.assertEquals(List.of(0, 1, 2), read.getChanged());
+            Assertions.assertEquals(spec.read(file.toFile()), read.getElement());
+            Element c = read.getElement().getChildren().get(2);
+
+            // edit B and insert a record before A
+            Files.writeString(file, "; Z\n0,0\n0,0\n\n; A\n1,2\n3,4\r\n \r\n; B\n5,6\n7,9\n\n; C\n9,10\n11,12");
+            read = reader.read();
+            Assertions.assertEquals(spec.read(file.toFile()), read.getElement());
+            Assertions.assertEquals(List.of(0, 2), read.getChanged());
+            Assertions.assertEquals(List.of(1), read.getRemoved());
+            Assertions.assertEquals(0, read.getPreviousIndex(1));
+            Assertions.assertEquals(2, read.getPreviousIndex(3));
+            // moved records keep their rows, under their new id
+            Assertions.assertEquals("3", read.getElement().getChildren().get(3).getId());
+            Assertions.assertSame(c.getChildren().get(0), read.getElement().getChildren().get(3).getChildren().get(0));
+            Assertions.assertEquals("2", c.getId());
+
+            read = reader.read();
+            Assertions.assertTrue(read.isUnchanged());
+            Assertions.assertTrue(read.getChanged().isEmpty());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testHeapBudget(@TempDir Path dir) {
+        try {
+            Path file = dir.resolve("budget.csv");
+            StringBuilder sb = new StringBuilder();
+            for (int record = 0; record < 200; record++) {
+                sb.append("; Record ").append(record).append('\n');
+                for (int row = 0; row < 10; row++) {
+                    sb.append(record).append(',').append(row).append(",value ").append(row).append('\n');
+                }
+                sb.append('\n');
+            }
+            Files.writeString(file, sb);
+
+            TextSpec spec = new TextSpec();
+            SpillingElementBuilder builder = new SpillingElementBuilder(64 * 1024, dir);
+            Element element = spec.read(file.toFile(), builder);
+            Element full = spec.read(file.toFile());
+            Assertions.assertTrue(builder.getSpilled() > 0);
+            // only the stubs of spilled records are held beyond the budget
+            Assertions.assertTrue(builder.getRetained() < ElementSize.estimate(full) / 4);
+            Assertions.assertEquals(full, element);
+
+            Element last = element.getChildren().get(199);
+            Assertions.assertInstanceOf(SpilledElement.class, last);
+            Assertions.assertEquals(" Record 199", last.getValue());
+            Assertions.assertEquals("value 3", last.find("3/2").getValue());
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> last.setValue("changed"));
+            // nor can what is read back, which would be lost once it is dropped
+            Element row = last.getChildren().get(0);
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> row.setValue("changed"));
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> row.getChildren().clear());
+            Assertions.assertThrows(UnsupportedOperationException.class, () -> row.getChildren().get(0).setId("x"));
+
+            // a record too large for the budget on its own spills its rows
+            Files.writeString(file, sb.toString().replace("\n\n", "\n"));
+            builder = new SpillingElementBuilder(64 * 1024, dir);
+            element = spec.read(file.toFile(), builder);
+            Assertions.assertTrue(builder.getSpilled() > 0);
+            Assertions.assertEquals(spec.read(file.toFile()), element);
+
+            // spilled elements can't be read once their file is closed
+            SpillFile spill = SpillFile.create(dir);
+            SpilledElement spilled = spill.spill(full.getChildren().get(0));
+            spill.close();
+            Assertions.assertFalse(spilled.isLoaded());
+            Assertions.assertThrows(IllegalStateException.class, spilled::getValue);
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testStreams(@TempDir Path dir) {
+        File file = new File("src/test/resources/plain/multirecord.csv");
+        Path gz = dir.resolve("multirecord.csv");
+        try (InputStream in = new FileInputStream(file);
+                OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+            TextSpec spec = new TextSpec();
+            Element expected = spec.read(file);
+            Assertions.assertEquals(expected, spec.read(in, file.getName()));
+            try (FileChannel channel = FileChannel.open(file.toPath())) {
+                Assertions.assertEquals(expected, spec.read(channel, file.getName()));
+            }
+
+            // gzip input is found by its content
+            Files.copy(file.toPath(), out);
+            out.close();
+            Assertions.assertEquals(expected, spec.read(gz.toFile()));
+            try (InputStream zipped = Files.newInputStream(gz)) {
+                Assertions.assertEquals(expected, spec.read(zipped, file.getName()));
+            }
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testWrite(@TempDir Path dir) {
+        try {
+            File file = new File("src/test/resources/plain/multirecord.csv");
+            TextSpec spec = new TextSpec(StandardCharsets.UTF_16, ";", "#", true);
+            Element expected = new TextSpec().read(file);
+            Path out = dir.resolve("multirecord.csv");
+            TextElementWriter.write(expected, out, spec);
+            Element written = spec.read(out.toFile());
+            Assertions.assertEquals(expected, written);
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testLongLines(@TempDir Path dir) {
+        try {
+            // lines and fields crossing the blocks the byte scanner classifies
+            StringBuilder text = new StringBuilder("; comment\r\n");
+            for (int r = 0; r < 200; r++) {
+                for (int c = 0; c < r % 23; c++) {
+                    text.append("v").append(r * c).append(c % 5 == 0 ? ":::" : "::");
+                }
+                text.append(r % 7 == 0 ? "\r\n\r\n" : r % 3 == 0 ? "\r" : "\n");
+            }
+            Path bytes = dir.resolve("utf8.csv");
+            Path chars = dir.resolve("utf16.csv");
+            Files.writeString(bytes, text, StandardCharsets.UTF_8);
+            Files.writeString(chars, text, StandardCharsets.UTF_16);
+
+            Element expected = new TextSpec(StandardCharsets.UTF_16, "::", ";", true).read(chars.toFile());
+            TextSpec spec = new TextSpec(StandardCharsets.UTF_8, "::", ";", true);
+            Element element = spec.read(bytes.toFile());
+            element.setId(expected.getId());
+            Assertions.assertEquals(expected, element);
+            // both byte scanner backends, whichever one the JVM picks by default
+            for (boolean vector : new boolean[] { false, true }) {
+                element = scan(spec, bytes, vector, TextScanner.MAP_WINDOW);
+                element.setId(expected.getId());
+                Assertions.assertEquals(expected, element);
+            }
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testByteScanner(@TempDir Path dir) {
+        try {
+            // every line ending, blank lines, comments and trailing empty fields
+            String text = "; header\n" + "a,b,,\r\n" + ",,c,\r" + "  \n" + "x,y\r\n\r\n" + "  ; note\r"
+                    + "1,,2,,,\n" + ",\n" + "\r\n" + "\u00e9t\u00e9,\u2603,\n" + "last,";
+            Path file = dir.resolve("lines.csv");
+            // single and multi-byte delimiters
+            for (String delimiter : List.of(",", "::", "\u2192")) {
+                Files.writeString(file, text.replace(",", delimiter), StandardCharsets.UTF_8);
+                for (boolean multipart : new boolean[] { false, true }) {
+                    TextSpec spec = new TextSpec(StandardCharsets.UTF_8, delimiter, ";", multipart);
+                    Element expected = scan(spec, file);
+                    Assertions.assertEquals(expected, spec.read(file.toFile()));
+                    for (boolean vector : new boolean[] { false, true }) {
+                        Assertions.assertEquals(expected, scan(spec, file, vector, TextScanner.MAP_WINDOW));
+                    }
+                }
+            }
+            // trailing empty fields are dropped, as String.split does
+            Files.writeString(file, text, StandardCharsets.UTF_8);
+            Assertions.assertEquals(List.of("a", "b"), new TextSpec(StandardCharsets.UTF_8, ",", ";", false)
+                    .read(file.toFile()).findAll("0/*").stream().map(Element::getValue).toList());
+
+            // delimiters with regex meta characters are split by the reader
+            Files.writeString(file, "a,b|c\nd|e\n", StandardCharsets.UTF_8);
+            TextSpec regex = new TextSpec(StandardCharsets.UTF_8, "[,|]", ";", false);
+            Assertions.assertFalse(new TextScanner(regex, PrimitiveParseListener.of(new ElementBuilder()))
+                    .isByteScannable());
+            Element element = regex.read(file.toFile());
+            Assertions.assertEquals(scan(regex, file), element);
+            Assertions.assertEquals(List.of("a", "b", "c"),
+                    element.findAll("0/*").stream().map(Element::getValue).toList());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testMappedWindows(@TempDir Path dir) {
+        try {
+            // past the size files are mapped at, with lines longer than the window
+            StringBuilder text = new StringBuilder();
+            for (int r = 0; text.length() < 5 * 1024 * 1024; r++) {
+                if (r % 1000 == 999) {
+                    text.append("long,").append("x".repeat(150_000)).append(",end\r\n\r\n");
+                } else {
+                    text.append(r).append(",value ").append(r).append(r % 2 == 0 ? ",,\n" : ",last\r");
+                }
+            }
+            Path file = dir.resolve("mapped.csv");
+            Files.writeString(file, text, StandardCharsets.UTF_8);
+            TextSpec spec = new TextSpec();
+            Element expected = scan(spec, file);
+            Assertions.assertEquals(expected, spec.read(file.toFile()));
+            for (boolean vector : new boolean[] { false, true }) {
+                Assertions.assertEquals(expected, scan(spec, file, vector, 64 * 1024));
+            }
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    /**
+     * Reads a file the way {@link TextSpec} does, through a byte scanner on the
+     * chosen backend.
+     */
+    private static Element scan(TextSpec spec, Path file, boolean vector, int mapWindow) throws IOException {
+        PrimitiveParseListener<Element> listener = PrimitiveParseListener.of(new ElementBuilder());
+        listener.openFile(file.getFileName().toString());
+        listener.openRecord(null);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            new TextScanner(spec, listener, vector, mapWindow).scan(channel);
+        }
+        listener.closeRecord();
+        return listener.closeFile();
+    }
+
+    /**
+     * Reads a file the way {@link TextSpec} does, decoding and splitting lines
+     * even when they could be scanned as bytes.
+     */
+    private static Element scan(TextSpec spec, Path file) throws IOException {
+        PrimitiveParseListener<Element> listener = PrimitiveParseListener.of(new ElementBuilder());
+        listener.openFile(file.getFileName().toString());
+        listener.openRecord(null);
+        try (BufferedReader reader = Files.newBufferedReader(file, spec.getCharset())) {
+            new TextScanner(spec, listener).scan(reader);
+        }
+        listener.closeRecord();
+        return listener.closeFile();
+    }
+
 }
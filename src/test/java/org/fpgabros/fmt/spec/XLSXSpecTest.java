@@ -16,19 +16,50 @@
 package org.fpgabros.fmt.spec;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.zip.GZIPOutputStream;
 
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.fpgabros.fmt.exception.FormatException;
+import org.fpgabros.fmt.exception.ParseException;
+import org.fpgabros.fmt.io.XLSXElementWriter;
 import org.fpgabros.fmt.model.Element;
+import org.fpgabros.fmt.model.NumberValue;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class XLSXSpecTest {
 
     @Test
     void testParse() {
         try {
-            Element element = new XLSXSpec().read(new File("src/test/resources/xlsx/comment.xlsx"));
+            File file = new File("src/test/resources/xlsx/comment.xlsx");
+            Element element = new XLSXSpec().read(file);
             Assertions.assertNotNull(element);
             System.out.println(element.dump(2));
+            // the streaming parser reads the same tree
+            Assertions.assertEquals(element, new XLSXSpec(";", true).read(file));
         } catch (Exception ex) {
             Assertions.fail(ex);
         }
@@ -37,9 +68,12 @@ class XLSXSpecTest {
     @Test
     void testMultisheet() {
         try {
-            Element element = new XLSXSpec().read(new File("src/test/resources/xlsx/multisheet.xlsx"));
+            File file = new File("src/test/resources/xlsx/multisheet.xlsx");
+            Element element = new XLSXSpec().read(file);
             Assertions.assertNotNull(element);
             System.out.println(element.dump(2));
+            // the streaming parser reads the same tree
+            Assertions.assertEquals(element, new XLSXSpec(";", true).read(file));
         } catch (Exception ex) {
             Assertions.fail(ex);
         }
@@ -48,9 +82,12 @@ class XLSXSpecTest {
     @Test
     void testMultiRecord() {
         try {
-            Element element = new XLSXSpec().read(new File("src/test/resources/xlsx/multirecord.xlsx"));
+            File file = new File("src/test/resources/xlsx/multirecord.xlsx");
+            Element element = new XLSXSpec().read(file);
             Assertions.assertNotNull(element);
             System.out.println(element.dump(2));
+            // the streaming parser reads the same tree
+            Assertions.assertEquals(element, new XLSXSpec(";", true).read(file));
         } catch (Exception ex) {
             Assertions.fail(ex);
         }
@@ -59,12 +96,243 @@ class XLSXSpecTest {
     @Test
     void testMultiMulti() {
         try {
-            Element element = new XLSXSpec().read(new File("src/test/resources/xlsx/multimulti.xlsx"));
+            File file = new File("src/test/resources/xlsx/multimulti.xlsx");
+            Element element = new XLSXSpec().read(file);
             Assertions.assertNotNull(element);
             System.out.println(element.dump(2));
+            // the streaming parser reads the same tree
+            Assertions.assertEquals(element, new XLSXSpec(";", true).read(file));
         } catch (Exception ex) {
             Assertions.fail(ex);
         }
     }
 
+    @Test
+    void testStreaming(@TempDir Path dir) {
+        try {
+            File file = dir.resolve("streaming.xlsx").toFile();
+            writeWorkbook(file);
+            Element expected = new XLSXSpec().read(file);
+            Element element = new XLSXSpec(";", true).read(file);
+            Assertions.assertNotNull(element);
+            Assertions.assertEquals(expected.dump(2), element.dump(2));
+            System.out.println(element.dump(2));
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testTyped(@TempDir Path dir) {
+        try {
+            File file = dir.resolve("typed.xlsx").toFile();
+            writeWorkbook(file);
+            Element element = new XLSXSpec(";", false, true).read(file);
+            Element streamed = new XLSXSpec(";", true, true).read(file);
+            Assertions.assertEquals(element.dump(2), streamed.dump(2));
+            System.out.println(element.dump(2));
+            Element row = element.find("Records/0/2");
+            Assertions.assertInstanceOf(NumberValue.class, row.getChild("0").getValueSequence());
+            Assertions.assertEquals(1.0, row.getChild("0").asDouble());
+            Assertions.assertEquals("TRUE", row.getChild("1").getValue());
+            // formulas give their cached result
+            Assertions.assertEquals(0.0, row.getChild("3").asDouble());
+            Assertions.assertEquals("10-Mar-2024", element.find("Records/1/3").getValue());
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testReadOptions(@TempDir Path dir) {
+        try {
+            File file = dir.resolve("options.xlsx").toFile();
+            writeWorkbook(file);
+            ReadOptions options = ReadOptions.builder().sheets("Single").build();
+            Element element = new XLSXSpec().read(file, options);
+            Element streamed = new XLSXSpec(";", true).read(file, options);
+            Assertions.assertEquals(element, streamed);
+            // the only sheet read is folded into the file
+            Assertions.assertEquals("only", element.getChild("1").getValue());
+
+            options = ReadOptions.builder().maxRows(2).columns(0).build();
+            element = new XLSXSpec().read(file, options);
+            streamed = new XLSXSpec(";", true).read(file, options);
+            Assertions.assertEquals(element, streamed);
+            System.out.println(element.dump(2));
+            Assertions.assertEquals("1.0", element.find("2/0").getValue());
+            Assertions.assertNull(element.find("2/1"));
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testStreams(@TempDir Path dir) {
+        try {
+            File file = dir.resolve("streams.xlsx").toFile();
+            writeWorkbook(file);
+            Path gz = dir.resolve("streams.xlsx.gz");
+            try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(gz))) {
+                Files.copy(file.toPath(), out);
+            }
+            for (XLSXSpec spec : List.of(new XLSXSpec(), new XLSXSpec(";", true))) {
+                Element expected = spec.read(file);
+                try (InputStream in = new FileInputStream(file)) {
+                    Assertions.assertEquals(expected, spec.read(in, file.getName()));
+                }
+                try (InputStream in = Files.newInputStream(gz)) {
+                    Assertions.assertEquals(expected, spec.read(in, file.getName()));
+                }
+                Assertions.assertEquals(expected.getChildren(), spec.read(gz.toFile()).getChildren());
+                // streams without a usable name are still read
+                for (String name : Arrays.asList(null, "", "..", "a\0b")) {
+                    try (InputStream in = new FileInputStream(file)) {
+                        Assertions.assertEquals(expected.getChildren(), spec.read(in, name).getChildren());
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testParallel(@TempDir Path dir) {
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            File file = dir.resolve("parallel.xlsx").toFile();
+            writeWorkbook(file);
+            for (XLSXSpec spec : List.of(new XLSXSpec(), new XLSXSpec(";", false, true))) {
+                Element expected = spec.read(file);
+                Assertions.assertEquals(expected, spec.readParallel(file, executor));
+                Assertions.assertEquals(expected.dump(2), spec.readParallel(file).dump(2));
+            }
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testMappedStrings(@TempDir Path dir) {
+        try {
+            File file = dir.resolve("strings.xlsx").toFile();
+            writeWorkbook(file);
+            // kept off the heap whatever the size
+            XLSXSpec mapped = new XLSXSpec(";", true, false, 0);
+            Assertions.assertEquals(new XLSXSpec().read(file), mapped.read(file));
+            Assertions.assertEquals(new XLSXSpec().read(file), mapped.readParallel(file));
+
+            try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ)) {
+                PackagePart part = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType()).get(0);
+                ReadOnlySharedStringsTable expected = new ReadOnlySharedStringsTable(part, false);
+                // a cache smaller than the table
+                try (MappedSharedStrings strings = new MappedSharedStrings(part, 2)) {
+                    Assertions.assertEquals(expected.getUniqueCount(), strings.getUniqueCount());
+                    for (int k = 0; k < 2; k++) {
+                        for (int i = 0; i < expected.getUniqueCount(); i++) {
+                            Assertions.assertEquals(expected.getItemAt(i).getString(),
+                                    strings.getItemAt(i).getString());
+                        }
+                    }
+                }
+            }
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testMissingSharedStrings(@TempDir Path dir) {
+        try {
+            File file = dir.resolve("missing.xlsx").toFile();
+            writeWorkbook(file);
+            // empty the shared strings table the cells refer to
+            try (OPCPackage pkg = OPCPackage.open(file, PackageAccess.READ_WRITE)) {
+                PackagePart part = pkg.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType()).get(0);
+                try (OutputStream out = part.getOutputStream()) {
+                    out.write(("<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\""
+                            + " count=\"0\" uniqueCount=\"0\"/>").getBytes(StandardCharsets.UTF_8));
+                }
+            }
+            for (XLSXSpec spec : List.of(new XLSXSpec(";", true), new XLSXSpec(";", true, false, 0))) {
+                Assertions.assertThrows(ParseException.class, () -> spec.read(file));
+                Assertions.assertThrows(ParseException.class, () -> spec.readParallel(file));
+            }
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    @Test
+    void testWrite(@TempDir Path dir) {
+        try {
+            File file = dir.resolve("source.xlsx").toFile();
+            writeWorkbook(file);
+            for (XLSXSpec spec : List.of(new XLSXSpec(), new XLSXSpec(";", true, true))) {
+                Element element = spec.read(file);
+                Path out = dir.resolve("written.xlsx");
+                XLSXElementWriter.write(element, out, spec);
+                Element reread = spec.read(out.toFile());
+                reread.setId(element.getId());
+                Assertions.assertEquals(element.dump(2), reread.dump(2));
+            }
+
+            Element book = new Element("book", null, List.of(), List.of(
+                    new Element("data", null, List.of(), List.of(
+                            new Element("0", "first\nsecond", List.of(), List.of(
+                                    row(2, "a", "1"), row(3, "b", "", "c"))),
+                            new Element("1", null, List.of(), List.of(
+                                    row(6, "d", "e"), row(7, "", "f"))))),
+                    new Element("single", "note", List.of(), List.of(
+                            row(1, "x", "y"), row(2, "z", "w")))));
+            Path out = dir.resolve("book.xlsx");
+            XLSXElementWriter.write(book, out, new XLSXSpec());
+            Element reread = new XLSXSpec(";", true).read(out.toFile());
+            reread.setId("book");
+            Assertions.assertEquals(book, reread);
+
+            // a row starting with the comment token can't be told from a comment
+            Element comment = new Element("book", null, List.of(), List.of(row(0, ";x", "y"), row(1, "z")));
+            Assertions.assertThrows(FormatException.class, () -> XLSXElementWriter.write(comment, out, new XLSXSpec()));
+        } catch (Exception ex) {
+            Assertions.fail(ex);
+        }
+    }
+
+    private static Element row(int id, String... values) {
+        Element row = new Element(id);
+        for (int i = 0; i < values.length; i++) {
+            row.getChildren().add(new Element(i, values[i]));
+        }
+        return row;
+    }
+
+    private static void writeWorkbook(File file) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); OutputStream out = new FileOutputStream(file)) {
+            Sheet sheet = workbook.createSheet("Records");
+            Row row = sheet.createRow(0);
+            row.createCell(0).setCellValue("; Name = Record 1");
+            row = sheet.createRow(1);
+            row.createCell(0).setCellValue("A");
+            row.createCell(1).setCellValue("B");
+            row = sheet.createRow(2);
+            row.createCell(0).setCellValue(1);
+            row.createCell(1).setCellValue(true);
+            row.createCell(3).setCellFormula("A3*2");
+            // row 3 left out to split the records
+            row = sheet.createRow(4);
+            row.createCell(1).setCellValue(" ; Name = Record 2");
+            row = sheet.createRow(5);
+            row.createCell(2).setCellValue("tail");
+            Cell date = row.createCell(3);
+            date.setCellValue(LocalDate.of(2024, 3, 10));
+            CellStyle style = workbook.createCellStyle();
+            style.setDataFormat(workbook.getCreationHelper().createDataFormat().getFormat("yyyy-mm-dd"));
+            date.setCellStyle(style);
+            sheet = workbook.createSheet("Single");
+            sheet.createRow(2).createCell(1).setCellValue("only");
+            workbook.write(out);
+        }
+    }
+
 }